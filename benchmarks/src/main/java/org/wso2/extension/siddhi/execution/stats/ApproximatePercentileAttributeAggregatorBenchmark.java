@@ -0,0 +1,108 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.query.api.definition.Attribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives {@link ApproximatePercentileAttributeAggregator} directly, without a Siddhi runtime, as a sliding
+ * length window would: each operation adds the newest value and expires the oldest one, and both return
+ * a percentile, so the throughput reflects the cost of answering a percentile after every event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApproximatePercentileAttributeAggregatorBenchmark {
+    private static final int EXTRA_VALUES = 1 << 16;
+
+    @Param({"1000", "100000", "1000000"})
+    public int windowSize;
+
+    @Param({"UNIFORM", "GAUSSIAN", "ASCENDING"})
+    public String distribution;
+
+    @Param({"50", "99"})
+    public double percentile;
+
+    @Param({"100", "500"})
+    public double compression;
+
+    private ApproximatePercentileAttributeAggregator aggregator;
+    private ApproximatePercentileAttributeAggregator.ExtensionState state;
+    private Object[][] events;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        aggregator = new ApproximatePercentileAttributeAggregator();
+        ConfigReader configReader = new ConfigReader() {
+            @Override
+            public String readConfig(String name, String defaultValue) {
+                return defaultValue;
+            }
+
+            @Override
+            public Map<String, String> getAllConfigs() {
+                return Collections.emptyMap();
+            }
+        };
+        state = aggregator.init(new ExpressionExecutor[]{
+                        new ConstantExpressionExecutor(null, Attribute.Type.DOUBLE),
+                        new ConstantExpressionExecutor(percentile, Attribute.Type.DOUBLE),
+                        new ConstantExpressionExecutor(compression, Attribute.Type.DOUBLE)},
+                ProcessingMode.SLIDE, false, configReader, null).createNewState();
+        Object[] values = BenchmarkValues.generate(Attribute.Type.DOUBLE, distribution, 0,
+                windowSize + EXTRA_VALUES, 42);
+        events = new Object[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            events[i] = new Object[]{values[i]};
+        }
+        for (next = 0; next < windowSize; next++) {
+            aggregator.processAdd(events[next], state);
+        }
+    }
+
+    @Benchmark
+    public Object slide() {
+        Object result = aggregator.processAdd(events[next % events.length], state);
+        aggregator.processRemove(events[(next - windowSize) % events.length], state);
+        next++;
+        return result;
+    }
+}
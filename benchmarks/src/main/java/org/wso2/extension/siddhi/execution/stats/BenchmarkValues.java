@@ -0,0 +1,83 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.Random;
+
+/**
+ * Generates the attribute values fed to the benchmarks.
+ */
+final class BenchmarkValues {
+    private static final int DUPLICATE_POOL_SIZE = 16;
+    private static final double SCALE = 1_000_000;
+
+    private BenchmarkValues() {
+    }
+
+    /**
+     * Generates boxed values of the given type.
+     *
+     * @param distribution   UNIFORM, GAUSSIAN or ASCENDING, the latter being the worst case for
+     *                       structures that do not balance themselves
+     * @param duplicateRatio the probability of a value being drawn from a small pool of repeated values
+     */
+    static Object[] generate(Attribute.Type type, String distribution, double duplicateRatio, int count,
+                             long seed) {
+        Random random = new Random(seed);
+        double[] pool = new double[DUPLICATE_POOL_SIZE];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = next(distribution, random, i);
+        }
+        Object[] values = new Object[count];
+        for (int i = 0; i < count; i++) {
+            double value = random.nextDouble() < duplicateRatio
+                    ? pool[random.nextInt(pool.length)]
+                    : next(distribution, random, i);
+            values[i] = box(type, value);
+        }
+        return values;
+    }
+
+    private static double next(String distribution, Random random, int index) {
+        switch (distribution) {
+            case "UNIFORM":
+                return random.nextDouble() * SCALE;
+            case "GAUSSIAN":
+                return SCALE / 2 + random.nextGaussian() * SCALE / 10;
+            case "ASCENDING":
+                return index + random.nextDouble();
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+    }
+
+    private static Object box(Attribute.Type type, double value) {
+        switch (type) {
+            case INT:
+                return (int) value;
+            case LONG:
+                return (long) (value * 1000);
+            case FLOAT:
+                return (float) value;
+            case DOUBLE:
+                return value;
+            default:
+                throw new IllegalArgumentException("Unsupported type " + type);
+        }
+    }
+}
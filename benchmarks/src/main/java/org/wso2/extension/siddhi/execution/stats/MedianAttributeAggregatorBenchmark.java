@@ -0,0 +1,104 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.query.api.definition.Attribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives {@link MedianAttributeAggregator} directly, without a Siddhi runtime, as a sliding length
+ * window would: each operation adds the newest value and expires the oldest one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MedianAttributeAggregatorBenchmark {
+    private static final int EXTRA_VALUES = 1 << 16;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int windowSize;
+
+    @Param({"INT", "LONG", "FLOAT", "DOUBLE"})
+    public String type;
+
+    @Param({"UNIFORM", "GAUSSIAN", "ASCENDING"})
+    public String distribution;
+
+    @Param({"0.0", "0.9"})
+    public double duplicateRatio;
+
+    @Param({"0", "0.01"})
+    public String relativeError;
+
+    private MedianAttributeAggregator aggregator;
+    private MedianAttributeAggregator.ExtensionState state;
+    private Object[] values;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Attribute.Type attributeType = Attribute.Type.valueOf(type);
+        aggregator = new MedianAttributeAggregator();
+        ConfigReader configReader = new ConfigReader() {
+            @Override
+            public String readConfig(String name, String defaultValue) {
+                return "relativeError".equals(name) ? relativeError : defaultValue;
+            }
+
+            @Override
+            public Map<String, String> getAllConfigs() {
+                return Collections.singletonMap("relativeError", relativeError);
+            }
+        };
+        state = aggregator.init(new ExpressionExecutor[]{new ConstantExpressionExecutor(null, attributeType)},
+                ProcessingMode.SLIDE, false, configReader, null).createNewState();
+        values = BenchmarkValues.generate(attributeType, distribution, duplicateRatio,
+                windowSize + EXTRA_VALUES, 42);
+        for (next = 0; next < windowSize; next++) {
+            aggregator.processAdd(values[next], state);
+        }
+    }
+
+    @Benchmark
+    public Object slide() {
+        Object median = aggregator.processAdd(values[next % values.length], state);
+        aggregator.processRemove(values[(next - windowSize) % values.length], state);
+        next++;
+        return median;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.query.api.definition.Attribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends events through a Siddhi query computing {@code stats:median} over a sliding length window,
+ * grouped by a key of the given cardinality.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MedianQueryBenchmark {
+    private static final int EVENT_COUNT = 1 << 16;
+
+    @Param({"10", "1000", "100000"})
+    public int windowSize;
+
+    @Param({"INT", "DOUBLE"})
+    public String type;
+
+    @Param({"UNIFORM"})
+    public String distribution;
+
+    @Param({"0.0", "0.9"})
+    public double duplicateRatio;
+
+    @Param({"1", "100", "10000"})
+    public int groups;
+
+    private SiddhiManager siddhiManager;
+    private SiddhiAppRuntime siddhiAppRuntime;
+    private InputHandler inputHandler;
+    private Object[][] events;
+    private int next;
+    private volatile Object lastMedian;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String query = "define stream inputStream (key string, tt " + type.toLowerCase() + "); " +
+                "@info(name = 'query1') from inputStream#window.length(" + windowSize + ") " +
+                "select key, stats:median(tt) as tt group by key insert into outputStream;";
+        siddhiManager = new SiddhiManager();
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] outputEvents) {
+                lastMedian = outputEvents[outputEvents.length - 1].getData(1);
+            }
+        });
+        siddhiAppRuntime.start();
+        inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+
+        Object[] values = BenchmarkValues.generate(Attribute.Type.valueOf(type), distribution, duplicateRatio,
+                EVENT_COUNT, 42);
+        events = new Object[EVENT_COUNT][];
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events[i] = new Object[]{"key" + (i % groups), values[i]};
+        }
+    }
+
+    @Benchmark
+    public void send() throws InterruptedException {
+        inputHandler.send(events[next++ % EVENT_COUNT]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        siddhiAppRuntime.shutdown();
+        siddhiManager.shutdown();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.util.SiddhiConstants;
+import io.siddhi.core.util.statistics.BufferedEventsTracker;
+import io.siddhi.core.util.statistics.EventBufferHolder;
+import io.siddhi.core.util.statistics.LatencyTracker;
+import io.siddhi.core.util.statistics.StatisticsTrackerFactory;
+import io.siddhi.core.util.statistics.ThroughputTracker;
+import io.siddhi.core.util.statistics.metrics.Level;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Statistics of an aggregator of a query, reported through the statistics of the Siddhi app.
+ * <p>
+ * The rate of additions and removals, and the time taken to compute results, are recorded as events are
+ * processed, but only while the statistics level of the app is {@link Level#DETAIL}. The number of
+ * values held, an estimate of the memory they take, and the number of group states holding any, are
+ * gauged from the live states only when the statistics are reported, so they cost nothing in between.
+ * Siddhi offers no general purpose gauge to extensions, so these are reported as buffer sizes.
+ * <p>
+ * Metrics are named after the query and the aggregator, e.g.
+ * {@code <prefix>.SiddhiApps.<app>.Siddhi.Queries.<query>.stats:median.adds.throughput}, and are only
+ * created if they match the metrics included by the app.
+ */
+final class AggregatorMetrics {
+
+    /**
+     * A state of the aggregator, measured when the statistics are reported. Implementations have to be
+     * safe to call from the reporting thread.
+     */
+    interface Measured {
+        long size();
+
+        long estimatedBytes();
+    }
+
+    private final SiddhiAppContext siddhiAppContext;
+    private final ThroughputTracker addTracker;
+    private final ThroughputTracker removeTracker;
+    private final LatencyTracker resultTracker;
+    private final Set<Measured> states = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private AggregatorMetrics(SiddhiQueryContext siddhiQueryContext, String function) {
+        this.siddhiAppContext = siddhiQueryContext.getSiddhiAppContext();
+        String prefix = siddhiAppContext.getSiddhiContext().getStatisticsConfiguration().getMetricPrefix() +
+                SiddhiConstants.METRIC_DELIMITER + SiddhiConstants.METRIC_INFIX_SIDDHI_APPS +
+                SiddhiConstants.METRIC_DELIMITER + siddhiAppContext.getName() +
+                SiddhiConstants.METRIC_DELIMITER + SiddhiConstants.METRIC_INFIX_SIDDHI +
+                SiddhiConstants.METRIC_DELIMITER + SiddhiConstants.METRIC_INFIX_QUERIES +
+                SiddhiConstants.METRIC_DELIMITER + siddhiQueryContext.getName() +
+                SiddhiConstants.METRIC_DELIMITER + function + SiddhiConstants.METRIC_DELIMITER;
+        StatisticsTrackerFactory factory = siddhiAppContext.getSiddhiContext().getStatisticsConfiguration()
+                .getFactory();
+
+        String name = prefix + "adds.throughput";
+        this.addTracker = isIncluded(name) ?
+                factory.createThroughputTracker(name, siddhiAppContext.getStatisticsManager()) : null;
+        name = prefix + "removes.throughput";
+        this.removeTracker = isIncluded(name) ?
+                factory.createThroughputTracker(name, siddhiAppContext.getStatisticsManager()) : null;
+        name = prefix + "result.latency";
+        this.resultTracker = isIncluded(name) ?
+                factory.createLatencyTracker(name, siddhiAppContext.getStatisticsManager()) : null;
+
+        BufferedEventsTracker gaugeTracker = factory.createBufferSizeTracker(siddhiAppContext.getStatisticsManager());
+        registerGauge(gaugeTracker, prefix + "values.size", Measured::size);
+        registerGauge(gaugeTracker, prefix + "estimatedBytes.size", Measured::estimatedBytes);
+        registerGauge(gaugeTracker, prefix + "groups.size", state -> state.size() > 0 ? 1 : 0);
+    }
+
+    /**
+     * Returns the metrics of the given aggregator of the query, or null if the app collects no statistics
+     * or the aggregator runs without a query, as it does in the benchmarks.
+     *
+     * @param function the namespace and name of the aggregator, e.g. stats:median
+     */
+    static AggregatorMetrics create(SiddhiQueryContext siddhiQueryContext, String function) {
+        if (siddhiQueryContext == null || siddhiQueryContext.getSiddhiAppContext() == null ||
+                siddhiQueryContext.getSiddhiAppContext().getStatisticsManager() == null) {
+            return null;
+        }
+        return new AggregatorMetrics(siddhiQueryContext, function);
+    }
+
+    /**
+     * Gauges the given state until it is garbage collected.
+     */
+    void register(Measured state) {
+        states.add(state);
+    }
+
+    void added() {
+        if (addTracker != null && isEnabled()) {
+            addTracker.eventIn();
+        }
+    }
+
+    void removed() {
+        if (removeTracker != null && isEnabled()) {
+            removeTracker.eventIn();
+        }
+    }
+
+    /**
+     * Starts timing the computation of a result, returning whether it is timed at all.
+     */
+    boolean resultStarted() {
+        if (resultTracker != null && isEnabled()) {
+            resultTracker.markIn();
+            return true;
+        }
+        return false;
+    }
+
+    void resultFinished() {
+        resultTracker.markOut();
+    }
+
+    private boolean isEnabled() {
+        return Level.DETAIL.compareTo(siddhiAppContext.getRootMetricsLevel()) <= 0;
+    }
+
+    private boolean isIncluded(String name) {
+        for (String regex : siddhiAppContext.getIncludedMetrics()) {
+            if (name.matches(regex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void registerGauge(BufferedEventsTracker tracker, String name, ToLongFunction<Measured> measure) {
+        if (!isIncluded(name)) {
+            return;
+        }
+        tracker.registerEventBufferHolder(new EventBufferHolder() {
+            @Override
+            public long getBufferedEvents() {
+                Measured[] measured;
+                synchronized (states) {
+                    measured = states.toArray(new Measured[0]);
+                }
+                long total = 0;
+                for (Measured state : measured) {
+                    total += measure.applyAsLong(state);
+                }
+                return total;
+            }
+
+            @Override
+            public boolean containsBufferedEvents() {
+                // The values are state rather than events waiting to be processed, so nothing has to be
+                // drained before a shutdown.
+                return false;
+            }
+        }, name);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
+import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
+import static io.siddhi.query.api.definition.Attribute.Type.INT;
+import static io.siddhi.query.api.definition.Attribute.Type.LONG;
+
+/**
+ * This extension returns an estimate of a percentile of aggregated events, using a t-digest.
+ */
+
+@Extension(
+        name = "approximatePercentile",
+        namespace = "stats",
+        description = "This extension returns an estimate of the given percentile of aggregated events." +
+                "\n " +
+                "The values are summarised in a t-digest, whose memory usage depends only on the " +
+                "compression and not on the number of events, so it can be used with large or unbounded " +
+                "windows. Estimates are most accurate at the extreme percentiles, and the error shrinks " +
+                "as the compression grows. Expired events are removed approximately, by taking their " +
+                "weight away from the closest centroid of the digest. Events with a null value are ignored.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its percentile.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+                @Parameter(name = "percentile",
+                        description = "The percentile to be estimated, a constant between 0 and 100.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+                @Parameter(name = "compression",
+                        description = "The accuracy parameter of the digest. Higher values keep more " +
+                                "centroids, which improves accuracy at the cost of memory and CPU.",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "100")
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the estimated percentile as a 'double' value for all data " +
+                        "types, i.e., for 'int', 'long', 'double' and 'float'.",
+                type = {DataType.DOUBLE}),
+        examples = @Example(
+                syntax = "from InputStream#window.time(1 hour)" +
+                        "\nselect stats:approximatePercentile(latency, 99) as p99Latency" +
+                        "\ninsert into OutputStream;",
+                description = "This returns an estimate of the 99th percentile of the latency values of " +
+                        "the last hour as a 'double' value, with the arrival and expiry of each event."
+        )
+)
+public class ApproximatePercentileAttributeAggregator
+        extends AttributeAggregatorExecutor<ApproximatePercentileAttributeAggregator.ExtensionState> {
+    private static final double DEFAULT_COMPRESSION = 100;
+
+    private double quantile;
+    private double compression = DEFAULT_COMPRESSION;
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode,
+                                                boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 2 && attributeExpressionExecutors.length != 3) {
+            throw new OperationNotSupportedException("Approximate percentile aggregator has to have 2 or 3 " +
+                    "parameters, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+
+        Attribute.Type type = attributeExpressionExecutors[0].getReturnType();
+        if (type != DOUBLE && type != INT && type != FLOAT && type != LONG) {
+            throw new OperationNotSupportedException("Approximate percentile not supported for " + type);
+        }
+
+        double percentile = constantValue(attributeExpressionExecutors[1], "percentile");
+        if (percentile < 0 || percentile > 100) {
+            throw new SiddhiAppValidationException("Percentile of the approximate percentile aggregator " +
+                    "should be between 0 and 100, but found " + percentile);
+        }
+        this.quantile = percentile / 100;
+
+        if (attributeExpressionExecutors.length == 3) {
+            this.compression = constantValue(attributeExpressionExecutors[2], "compression");
+            if (this.compression < 10) {
+                throw new SiddhiAppValidationException("Compression of the approximate percentile " +
+                        "aggregator should be at least 10, but found " + this.compression);
+            }
+        }
+
+        return ExtensionState::new;
+    }
+
+    private static double constantValue(ExpressionExecutor executor, String name) {
+        if (!(executor instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppValidationException("The " + name + " parameter of the approximate percentile " +
+                    "aggregator should be a constant");
+        }
+        Object value = ((ConstantExpressionExecutor) executor).getValue();
+        if (!(value instanceof Number)) {
+            throw new SiddhiAppValidationException("The " + name + " parameter of the approximate percentile " +
+                    "aggregator should be numeric, but found " + value);
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    public Attribute.Type getReturnType() {
+        return DOUBLE;
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        return new IllegalStateException("Approximate percentile cannot process a single argument, but found " +
+                data);
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        if (data[0] != null) {
+            state.digest.add(((Number) data[0]).doubleValue());
+        }
+        return state.digest.quantile(quantile);
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        return new IllegalStateException("Approximate percentile cannot process a single argument, but found " +
+                data);
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        if (data[0] != null) {
+            state.digest.remove(((Number) data[0]).doubleValue());
+        }
+        return state.digest.quantile(quantile);
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        state.digest.clear();
+        return 0.0;
+    }
+
+    public void start() {
+    }
+
+    public void stop() {
+    }
+
+    class ExtensionState extends State {
+        private TDigest digest = new TDigest(compression);
+
+        @Override
+        public boolean canDestroy() {
+            return digest.size() == 0;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            Map<String, Object> state = new HashMap<>();
+            state.put("Digest", this.digest.toBytes());
+            return state;
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            this.digest = TDigest.fromBytes((byte[]) state.get("Digest"));
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Exact histogram of a few distinct {@code long} keys, holding each distinct key once with its count.
+ * <p>
+ * Distinct keys are kept sorted in an array, and a Fenwick tree over their counts gives the key at any
+ * rank in O(log k) time for k distinct keys. Adding another occurrence or removing one is also
+ * O(log k), and takes no memory, so streams with a handful of values, such as status codes, need
+ * memory in proportion to the number of distinct values rather than to the number of events.
+ * <p>
+ * A new distinct key costs O(k) to insert, hence the histogram holds at most {@link #MAX_DISTINCT}
+ * distinct keys. Keys whose count drops to zero keep their slot, so that a recurring key is not
+ * inserted again, until the slots run out.
+ */
+final class CountingHistogram {
+    static final int MAX_DISTINCT = 256;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int[] fenwick = new int[INITIAL_CAPACITY + 1];
+    private int slots;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long estimatedBytes() {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES) + (long) fenwick.length * Integer.BYTES;
+    }
+
+    /**
+     * Adds one occurrence of the given key.
+     *
+     * @return false, leaving the histogram unchanged, if the key would exceed {@link #MAX_DISTINCT}
+     * distinct keys
+     */
+    boolean add(long key) {
+        int slot = Arrays.binarySearch(keys, 0, slots, key);
+        if (slot < 0) {
+            if (slots == MAX_DISTINCT && !compact()) {
+                return false;
+            }
+            slot = -Arrays.binarySearch(keys, 0, slots, key) - 1;
+            insert(slot, key);
+        }
+        counts[slot]++;
+        update(slot, 1);
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes one occurrence of the given key.
+     *
+     * @return false if the key is not present
+     */
+    boolean remove(long key) {
+        int slot = Arrays.binarySearch(keys, 0, slots, key);
+        if (slot < 0 || counts[slot] == 0) {
+            return false;
+        }
+        counts[slot]--;
+        update(slot, -1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns the key at the given zero based rank in ascending order.
+     */
+    long select(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " is out of range for size " + size);
+        }
+        int position = 0;
+        for (int step = Integer.highestOneBit(keys.length); step > 0; step >>>= 1) {
+            int next = position + step;
+            if (next <= keys.length && fenwick[next] <= rank) {
+                position = next;
+                rank -= fenwick[next];
+            }
+        }
+        return keys[position];
+    }
+
+    /**
+     * Selects the keys at several zero based ranks, as {@link OrderStatisticTree#select(int[], int, long[])}.
+     */
+    void select(int[] ranks, int count, long[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = select(ranks[i]);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0, slots, 0);
+        Arrays.fill(fenwick, 0);
+        slots = 0;
+        size = 0;
+    }
+
+    void moveTo(OrderStatisticTree tree) {
+        for (int slot = 0; slot < slots; slot++) {
+            if (counts[slot] > 0) {
+                tree.add(keys[slot], counts[slot]);
+            }
+        }
+        clear();
+    }
+
+    void moveTo(MedianHeaps heaps) {
+        long[] expanded = new long[size];
+        int position = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            Arrays.fill(expanded, position, position + counts[slot], keys[slot]);
+            position += counts[slot];
+        }
+        heaps.load(expanded, size);
+        clear();
+    }
+
+    /**
+     * Encodes the histogram in the format of {@link OrderStatisticTree#toBytes()}.
+     */
+    byte[] toBytes() {
+        int distinct = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (counts[slot] > 0) {
+                distinct++;
+            }
+        }
+        byte[] out = new byte[OrderStatisticTree.MAX_VAR_LONG_BYTES * (1 + 2 * distinct)];
+        int position = OrderStatisticTree.writeVarLong(out, 0, distinct);
+        long previous = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (counts[slot] > 0) {
+                position = OrderStatisticTree.writeVarLong(out, position, keys[slot] - previous);
+                position = OrderStatisticTree.writeVarLong(out, position, counts[slot]);
+                previous = keys[slot];
+            }
+        }
+        return Arrays.copyOf(out, position);
+    }
+
+    /**
+     * Replaces the histogram contents with those encoded by {@link OrderStatisticTree#toBytes()}.
+     *
+     * @return false, leaving the histogram unchanged, if they have more than {@link #MAX_DISTINCT}
+     * distinct keys
+     */
+    boolean restore(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        int distinct = (int) OrderStatisticTree.readVarLong(in);
+        if (distinct > MAX_DISTINCT) {
+            return false;
+        }
+        clear();
+        ensureCapacity(distinct);
+        long key = 0;
+        for (int slot = 0; slot < distinct; slot++) {
+            key += OrderStatisticTree.readVarLong(in);
+            keys[slot] = key;
+            counts[slot] = (int) OrderStatisticTree.readVarLong(in);
+            size += counts[slot];
+        }
+        slots = distinct;
+        rebuild();
+        return true;
+    }
+
+    /**
+     * Frees the slots of keys whose count dropped to zero.
+     *
+     * @return false if there were none
+     */
+    private boolean compact() {
+        int used = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (counts[slot] > 0) {
+                keys[used] = keys[slot];
+                counts[used++] = counts[slot];
+            }
+        }
+        if (used == slots) {
+            return false;
+        }
+        Arrays.fill(counts, used, slots, 0);
+        slots = used;
+        rebuild();
+        return true;
+    }
+
+    private void insert(int slot, long key) {
+        ensureCapacity(slots + 1);
+        System.arraycopy(keys, slot, keys, slot + 1, slots - slot);
+        System.arraycopy(counts, slot, counts, slot + 1, slots - slot);
+        keys[slot] = key;
+        counts[slot] = 0;
+        slots++;
+        rebuild();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (keys.length < capacity) {
+            int length = Math.min(MAX_DISTINCT, Math.max(capacity, keys.length * 2));
+            keys = Arrays.copyOf(keys, length);
+            counts = Arrays.copyOf(counts, length);
+            fenwick = new int[length + 1];
+        }
+    }
+
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < fenwick.length; i += i & -i) {
+            fenwick[i] += delta;
+        }
+    }
+
+    private void rebuild() {
+        Arrays.fill(fenwick, 0);
+        for (int i = 1; i < fenwick.length; i++) {
+            fenwick[i] += counts[i - 1];
+            int parent = i + (i & -i);
+            if (parent < fenwick.length) {
+                fenwick[parent] += fenwick[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.Arrays;
+
+import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
+import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
+import static io.siddhi.query.api.definition.Attribute.Type.INT;
+import static io.siddhi.query.api.definition.Attribute.Type.LONG;
+
+/**
+ * This extension creates a t-digest holding a single value.
+ */
+
+@Extension(
+        name = "createDigest",
+        namespace = "stats",
+        description = "This extension creates a t-digest, a mergeable sketch for estimating percentiles, that " +
+                "holds the given value. Digests can be combined with 'stats:mergeDigest()' and queried with " +
+                "'stats:digestPercentile()'. This is how 'stats:median()' is computed in incremental " +
+                "aggregations.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value to be added to the digest.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns a t-digest as an 'object'.",
+                type = {DataType.OBJECT}),
+        examples = @Example(
+                syntax = "from InputStream" +
+                        "\nselect stats:createDigest(latency) as latencyDigest" +
+                        "\ninsert into OutputStream;",
+                description = "This returns a digest holding the latency value of each event."
+        )
+)
+public class CreateDigestFunctionExecutor extends FunctionExecutor {
+    static final double DEFAULT_COMPRESSION = 100;
+
+    @Override
+    protected StateFactory init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 1) {
+            throw new OperationNotSupportedException("Create digest function has to have exactly 1 " +
+                    "parameter, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+        Attribute.Type type = attributeExpressionExecutors[0].getReturnType();
+        if (type != DOUBLE && type != INT && type != FLOAT && type != LONG) {
+            throw new OperationNotSupportedException("Create digest not supported for " + type);
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        return new IllegalStateException("Create digest cannot process data array, but found " +
+                Arrays.deepToString(data));
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        TDigest digest = new TDigest(DEFAULT_COMPRESSION);
+        if (data != null) {
+            digest.add(((Number) data).doubleValue());
+        }
+        return digest;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.OBJECT;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
+import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
+import static io.siddhi.query.api.definition.Attribute.Type.INT;
+import static io.siddhi.query.api.definition.Attribute.Type.LONG;
+
+/**
+ * This extension returns an estimate of a percentile of the values summarised by a t-digest.
+ */
+
+@Extension(
+        name = "digestPercentile",
+        namespace = "stats",
+        description = "This extension returns an estimate of the given percentile of the values summarised " +
+                "by a t-digest, created by 'stats:createDigest()' or 'stats:mergeDigest()'.",
+        parameters = {
+                @Parameter(name = "digest",
+                        description = "The digest whose percentile needs to be estimated.",
+                        type = {DataType.OBJECT}),
+                @Parameter(name = "percentile",
+                        description = "The percentile to be estimated, between 0 and 100.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the estimated percentile as a 'double' value, or 0.0 when the digest " +
+                        "is empty.",
+                type = {DataType.DOUBLE}),
+        examples = @Example(
+                syntax = "from LatencyDigestStream" +
+                        "\nselect stats:digestPercentile(latencyDigest, 99) as p99Latency" +
+                        "\ninsert into OutputStream;",
+                description = "This returns an estimate of the 99th percentile of the latency values " +
+                        "summarised by each digest."
+        )
+)
+public class DigestPercentileFunctionExecutor extends FunctionExecutor {
+
+    @Override
+    protected StateFactory init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 2) {
+            throw new OperationNotSupportedException("Digest percentile function has to have exactly 2 " +
+                    "parameters, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.OBJECT) {
+            throw new OperationNotSupportedException("Digest percentile not supported for " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        Attribute.Type type = attributeExpressionExecutors[1].getReturnType();
+        if (type != DOUBLE && type != INT && type != FLOAT && type != LONG) {
+            throw new OperationNotSupportedException("Percentile of the digest percentile function should be " +
+                    "numeric, but found " + type);
+        }
+        if (attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor) {
+            Object percentile = ((ConstantExpressionExecutor) attributeExpressionExecutors[1]).getValue();
+            if (percentile == null) {
+                throw new SiddhiAppValidationException("Percentile of the digest percentile function should " +
+                        "not be null");
+            }
+            checkPercentile(percentile);
+        }
+        return null;
+    }
+
+    private static double checkPercentile(Object value) {
+        double percentile = ((Number) value).doubleValue();
+        if (percentile < 0 || percentile > 100) {
+            throw new SiddhiAppValidationException("Percentile of the digest percentile function should be " +
+                    "between 0 and 100, but found " + percentile);
+        }
+        return percentile;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (data[1] == null) {
+            throw new SiddhiAppRuntimeException("Percentile of the digest percentile function should not be " +
+                    "null");
+        }
+        if (!(data[0] instanceof TDigest)) {
+            return 0.0;
+        }
+        return ((TDigest) data[0]).quantile(checkPercentile(data[1]) / 100);
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        return new IllegalStateException("Digest percentile cannot process a single argument, but found " +
+                data);
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return DOUBLE;
+    }
+}
@@ -0,0 +1,366 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Histogram with logarithmically sized buckets, which estimates the value at any rank within a fixed
+ * relative error, using memory bounded by the relative error rather than by the number of values.
+ * <p>
+ * A positive value x falls into the bucket i for which gamma^(i-1) < x <= gamma^i, where
+ * gamma = (1 + e) / (1 - e) for a relative error e, and negative values are bucketed by their
+ * magnitude. The bucket is represented by 2 * gamma^i / (gamma + 1), which is within e of every value
+ * in it, so the value returned for a rank is within e of the exact value at that rank. Only counts are
+ * kept, hence values are removed exactly by decrementing the count of their bucket.
+ * <p>
+ * Only the buckets between the smallest and the largest magnitude seen are allocated, which is
+ * ln(largest / smallest) / ln(gamma) buckets, about 350 for magnitudes from 1 to 1000 at a relative
+ * error of 1%. Buckets are capped per sign at the number covering a factor of {@link #COVERED_RANGE},
+ * about 2000 for a relative error of 1% and ten times as many for 0.1%. Should the values span more
+ * than that, the buckets of the smallest magnitudes are collapsed into one, and only the ranks falling
+ * into it lose the guarantee.
+ * <p>
+ * The counts of the buckets are kept in a Fenwick tree, as in {@link CountingHistogram}, so the bucket
+ * holding a rank is found in time logarithmic in the number of buckets rather than by a scan. Infinite
+ * values are counted apart from the buckets, as they have no bucket, and are returned exactly.
+ */
+final class LogarithmicHistogram {
+    static final double COVERED_RANGE = 1e18;
+    /**
+     * Smallest relative error accepted, for which the buckets of each sign are capped at about 200,000, as
+     * the cap grows inversely with the relative error and would no longer fit an int below about 1e-8.
+     */
+    static final double MIN_RELATIVE_ERROR = 1e-4;
+    private static final int INITIAL_BUCKETS = 32;
+
+    private final double relativeError;
+    private final double logGamma;
+    private final double representativeFactor;
+    private final Buckets positive;
+    private final Buckets negative;
+    private long zeroCount;
+    private long positiveInfinityCount;
+    private long negativeInfinityCount;
+
+    LogarithmicHistogram(double relativeError) {
+        if (!(relativeError >= MIN_RELATIVE_ERROR && relativeError < 1)) {
+            throw new IllegalArgumentException("Relative error should be at least " + MIN_RELATIVE_ERROR +
+                    " and less than 1, but found " + relativeError);
+        }
+        this.relativeError = relativeError;
+        double gamma = (1 + relativeError) / (1 - relativeError);
+        this.logGamma = Math.log(gamma);
+        this.representativeFactor = 2 / (gamma + 1);
+        int maxBuckets = (int) Math.ceil(Math.log(COVERED_RANGE) / logGamma);
+        this.positive = new Buckets(maxBuckets);
+        this.negative = new Buckets(maxBuckets);
+    }
+
+    long size() {
+        return positive.total + negative.total + zeroCount + positiveInfinityCount + negativeInfinityCount;
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    long estimatedBytes() {
+        return (long) (positive.fenwick.length + negative.fenwick.length) * Long.BYTES;
+    }
+
+    void add(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            positiveInfinityCount++;
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            negativeInfinityCount++;
+        } else if (value > 0) {
+            positive.add(index(value));
+        } else if (value < 0) {
+            negative.add(index(-value));
+        } else if (value == 0) {
+            zeroCount++;
+        }
+    }
+
+    /**
+     * Removes one value from its bucket.
+     *
+     * @return false if the bucket of the value is empty
+     */
+    boolean remove(double value) {
+        if (value == Double.POSITIVE_INFINITY && positiveInfinityCount > 0) {
+            positiveInfinityCount--;
+            return true;
+        } else if (value == Double.NEGATIVE_INFINITY && negativeInfinityCount > 0) {
+            negativeInfinityCount--;
+            return true;
+        } else if (Double.isInfinite(value)) {
+            return false;
+        } else if (value > 0) {
+            return positive.remove(index(value));
+        } else if (value < 0) {
+            return negative.remove(index(-value));
+        } else if (value == 0 && zeroCount > 0) {
+            zeroCount--;
+            return true;
+        }
+        return false;
+    }
+
+    void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        positiveInfinityCount = 0;
+        negativeInfinityCount = 0;
+    }
+
+    /**
+     * Estimates the median, averaging the estimates of the two middle values when the size is even.
+     */
+    double median() {
+        long size = size();
+        if (size == 0) {
+            return 0.0;
+        }
+        long midPoint = size / 2;
+        if (size % 2 == 0) {
+            return (valueAt(midPoint - 1) + valueAt(midPoint)) / 2.0;
+        }
+        return valueAt(midPoint);
+    }
+
+    /**
+     * Estimates the value at the given zero based rank in ascending order.
+     */
+    double valueAt(long rank) {
+        if (rank < negativeInfinityCount) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        rank -= negativeInfinityCount;
+        if (rank < negative.total) {
+            // Negative buckets are ordered by magnitude, so ascending ranks start from the last bucket.
+            return -representative(negative.indexAt(negative.total - 1 - rank));
+        }
+        rank -= negative.total;
+        if (rank < zeroCount) {
+            return 0.0;
+        }
+        rank -= zeroCount;
+        if (rank >= positive.total) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return representative(positive.indexAt(rank));
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    private double representative(int index) {
+        return Math.exp(index * logGamma) * representativeFactor;
+    }
+
+    byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(8 + 8 + positive.bytes() + negative.bytes() + 8 + 8);
+        out.putDouble(relativeError).putLong(zeroCount);
+        positive.write(out);
+        negative.write(out);
+        // Appended, so that histograms persisted before infinities were counted can still be read.
+        out.putLong(positiveInfinityCount).putLong(negativeInfinityCount);
+        return out.array();
+    }
+
+    static LogarithmicHistogram fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        LogarithmicHistogram histogram = new LogarithmicHistogram(in.getDouble());
+        histogram.zeroCount = in.getLong();
+        histogram.positive.read(in);
+        histogram.negative.read(in);
+        if (in.remaining() >= 8 + 8) {
+            histogram.positiveInfinityCount = in.getLong();
+            histogram.negativeInfinityCount = in.getLong();
+        }
+        return histogram;
+    }
+
+    /**
+     * Counts of consecutive buckets, starting from the bucket {@code minIndex}, where values below
+     * {@code minIndex} are counted in it once the maximum number of buckets is reached. Only the Fenwick
+     * tree of the counts is kept, in which the bucket at position p is counted from {@code fenwick[p + 1]}.
+     */
+    private static final class Buckets {
+        private final int maxBuckets;
+        private long[] fenwick = new long[1];
+        private int minIndex;
+        private long total;
+
+        Buckets(int maxBuckets) {
+            this.maxBuckets = maxBuckets;
+        }
+
+        private int length() {
+            return fenwick.length - 1;
+        }
+
+        void add(int index) {
+            if (total == 0) {
+                if (length() == 0) {
+                    fenwick = new long[INITIAL_BUCKETS + 1];
+                }
+                minIndex = index - length() / 2;
+            } else if (index < minIndex || index - (long) minIndex >= length()) {
+                index = grow(index);
+            }
+            update(index - minIndex, 1);
+            total++;
+        }
+
+        boolean remove(int index) {
+            int position = (int) Math.max(0, index - (long) minIndex);
+            if (total == 0 || position >= length() || count(position) == 0) {
+                return false;
+            }
+            update(position, -1);
+            total--;
+            return true;
+        }
+
+        void clear() {
+            Arrays.fill(fenwick, 0);
+            total = 0;
+        }
+
+        /**
+         * Returns the index of the bucket holding the given zero based rank.
+         */
+        int indexAt(long rank) {
+            if (rank < 0 || rank >= total) {
+                throw new IndexOutOfBoundsException("Rank " + rank + " is out of range for size " + total);
+            }
+            int position = 0;
+            for (int step = Integer.highestOneBit(length()); step > 0; step >>>= 1) {
+                int next = position + step;
+                if (next <= length() && fenwick[next] <= rank) {
+                    position = next;
+                    rank -= fenwick[next];
+                }
+            }
+            return minIndex + position;
+        }
+
+        private void update(int position, long delta) {
+            for (int i = position + 1; i < fenwick.length; i += i & -i) {
+                fenwick[i] += delta;
+            }
+        }
+
+        private long count(int position) {
+            int node = position + 1;
+            long count = fenwick[node];
+            for (int i = position, stop = node - (node & -node); i > stop; i -= i & -i) {
+                count -= fenwick[i];
+            }
+            return count;
+        }
+
+        /**
+         * Returns the count of each bucket, undoing {@link #fenwickOf(long[])} in O(n) time.
+         */
+        private long[] counts() {
+            long[] counts = Arrays.copyOf(fenwick, fenwick.length);
+            for (int i = length(); i > 0; i--) {
+                int parent = i + (i & -i);
+                if (parent < counts.length) {
+                    counts[parent] -= counts[i];
+                }
+            }
+            return Arrays.copyOfRange(counts, 1, counts.length);
+        }
+
+        /**
+         * Builds the Fenwick tree of the given counts in O(n) time.
+         */
+        private static long[] fenwickOf(long[] counts) {
+            long[] fenwick = new long[counts.length + 1];
+            System.arraycopy(counts, 0, fenwick, 1, counts.length);
+            for (int i = 1; i < fenwick.length; i++) {
+                int parent = i + (i & -i);
+                if (parent < fenwick.length) {
+                    fenwick[parent] += fenwick[i];
+                }
+            }
+            return fenwick;
+        }
+
+        /**
+         * Widens the buckets to cover the given index, collapsing the lowest buckets if more than
+         * {@code maxBuckets} would be needed.
+         *
+         * @return the index the value is counted under
+         */
+        private int grow(int index) {
+            if (index < minIndex && length() == maxBuckets) {
+                return minIndex;
+            }
+            long[] counts = counts();
+            long low = Math.min(index, minIndex);
+            long high = Math.max(index, minIndex + (long) counts.length - 1);
+            long span = high - low + 1;
+            int length = (int) Math.min(maxBuckets, Math.max(span, 2L * counts.length));
+            int newMinIndex;
+            if (span > maxBuckets) {
+                newMinIndex = (int) (high - maxBuckets + 1);
+            } else if (index < minIndex) {
+                // Leave room below, where the next values are likely to arrive as well.
+                newMinIndex = (int) (high - length + 1);
+            } else {
+                newMinIndex = minIndex;
+            }
+            long[] newCounts = new long[length];
+            for (int i = 0; i < counts.length; i++) {
+                newCounts[(int) Math.max(0, minIndex + (long) i - newMinIndex)] += counts[i];
+            }
+            fenwick = fenwickOf(newCounts);
+            minIndex = newMinIndex;
+            return Math.max(index, newMinIndex);
+        }
+
+        int bytes() {
+            return 4 + 4 + 8 * length();
+        }
+
+        void write(ByteBuffer out) {
+            out.putInt(minIndex).putInt(length());
+            for (long count : counts()) {
+                out.putLong(count);
+            }
+        }
+
+        void read(ByteBuffer in) {
+            minIndex = in.getInt();
+            long[] counts = new long[in.getInt()];
+            total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = in.getLong();
+                total += counts[i];
+            }
+            fenwick = fenwickOf(counts);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+
+/**
+ * This extension returns the mean of aggregated events.
+ */
+
+@Extension(
+        name = "mean",
+        namespace = "stats",
+        description = "This extension returns the mean of aggregated events." +
+                "\n " +
+                "The mean is updated incrementally with Welford's method, so the arrival and expiry of each " +
+                "event costs O(1), and it is kept relative to a value that follows the mean of the window " +
+                "to stay accurate for values with a large common offset, or values that drift.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its " +
+                                "mean.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the mean as a 'double' value for all data " +
+                        "types, i.e., for 'int', 'long', 'double' and 'float'.",
+                type = {DataType.DOUBLE}),
+        examples = @Example(
+                syntax = "from InputStream#window.length(5)" +
+                        "\nselect stats:mean(price) as meanPrice" +
+                        "\ninsert into OutputStream;",
+                description = "This returns the mean of the price values of the last five " +
+                        "events as a 'double' value, with the arrival and expiry of each event."
+        )
+)
+public class MeanAttributeAggregator extends MomentAttributeAggregator {
+
+    @Override
+    String statisticName() {
+        return "Mean";
+    }
+
+    @Override
+    double statistic(WelfordMoments moments) {
+        return moments.mean();
+    }
+}
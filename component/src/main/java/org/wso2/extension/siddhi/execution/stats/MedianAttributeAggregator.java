@@ -36,22 +36,25 @@ import io.siddhi.annotation.Example;
 import io.siddhi.annotation.Extension;
 import io.siddhi.annotation.Parameter;
 import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.SystemParameter;
 import io.siddhi.annotation.util.DataType;
 import io.siddhi.core.config.SiddhiQueryContext;
 import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
 import io.siddhi.core.executor.ExpressionExecutor;
 import io.siddhi.core.query.processor.ProcessingMode;
 import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
 import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.SnapshotStateList;
 import io.siddhi.core.util.snapshot.state.State;
 import io.siddhi.core.util.snapshot.state.StateFactory;
 import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
 import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
@@ -67,28 +70,122 @@ import static io.siddhi.query.api.definition.Attribute.Type.LONG;
         namespace = "stats",
         description = "This extension returns the median of aggregated events." +
                 "\n " +
-                "As the calculation of the median is performed with the arrival and expiry of each event, " +
-                "it is not recommended to use this extension for large window sizes.",
+                "The values are kept unboxed in an order-statistic tree, so the arrival and expiry of each " +
+                "event costs O(log n) for a window of n events. Values expired in the order they arrived, " +
+                "as with length and time windows, are taken straight from the tree instead of being " +
+                "searched for. In batch windows, where values are only added until the batch is reset, " +
+                "they are appended to a pair of heaps that keep the median at hand instead. As every value " +
+                "of the window is retained to compute the exact median, memory usage grows with the " +
+                "window size. Events with a null value are ignored." +
+                "\n " +
+                "For large windows, such as an hour long time window of a busy stream, a relative error can " +
+                "be given instead. The values are then only counted in a histogram with logarithmically " +
+                "sized buckets, and the median returned is within the given relative error of the exact " +
+                "median, e.g. between 99 and 101 for an exact median of 100 at a relative error of 0.01. " +
+                "Memory usage no longer depends on the window size but on how many orders of magnitude the " +
+                "values span, which is a few kilobytes for values from 1 to 1000 at a relative error of " +
+                "0.01, and is at most about 32 kilobytes at that error, whatever the values. As this bound " +
+                "grows as the error shrinks, the relative error should be at least 0.0001, for which it is " +
+                "about 3 megabytes. When the median lies between two values of opposite signs, the error " +
+                "is relative to the larger magnitude of the two." +
+                "\n " +
+                "Exact medians of windows with tens of millions of values can instead be kept off the Java " +
+                "heap, by setting the 'storage' system parameter to 'offHeap'. The tree is then held in " +
+                "direct buffers outside the heap, which the garbage collector neither scans nor copies, and " +
+                "these are handed back for reuse once the state of the query, or of a group, is emptied." +
+                "\n " +
+                "To survive windows that occasionally grow far beyond their usual size, the 'memoryBudget' " +
+                "system parameter caps the memory taken by the exact medians of each query, across all its " +
+                "groups. A group whose values take the query past its budget moves them into a memory-mapped " +
+                "file in the 'spillDirectory', which the operating system pages in and out as needed, and " +
+                "keeps them there, at a somewhat higher cost per event, until the group is emptied or holds " +
+                "a quarter of the values it spilled, when they move back unless the budget is still exceeded." +
+                "\n " +
+                "When the statistics of the Siddhi app are enabled at the 'DETAIL' level, the rate of values " +
+                "added and removed and the time taken to compute medians are reported for each query, along " +
+                "with the number of values held, an estimate of the bytes they take, and the number of groups " +
+                "holding any, under '<query>.stats:median'." +
+                "\n " +
+                "Queries grouping by short lived keys, e.g. session or request ids, hand the emptied stores of " +
+                "expired groups to new groups, up to 'statePoolSize' stores per query, instead of allocating " +
+                "new ones. Pooled stores keep at most the memory of a small store, and those the query leaves " +
+                "unused while its groups take " + StorePool.TRIM_INTERVAL + " stores are given up.",
         parameters = {
                 @Parameter(name = "data",
                         description = "The value that needs to be aggregated in order to obtain its median.",
-                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+                @Parameter(name = "relative.error",
+                        description = "The relative error allowed in the median, a constant of at least " +
+                                "0.0001 and less than 1. If given, memory usage is bounded as described " +
+                                "above. If 0, the exact median is returned.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "The 'relativeError' system parameter")
+        },
+        systemParameter = {
+                @SystemParameter(name = "relativeError",
+                        description = "The relative error allowed in the medians of queries that do not " +
+                                "give one. The default, 0, returns exact medians.",
+                        defaultValue = "0",
+                        possibleParameters = "0, or any value from 0.0001 and less than 1"),
+                @SystemParameter(name = "storage",
+                        description = "Where the values of exact medians are kept, 'heap' or 'offHeap'.",
+                        defaultValue = "heap",
+                        possibleParameters = {"heap", "offHeap"}),
+                @SystemParameter(name = "memoryBudget",
+                        description = "The memory the exact medians of a query may take, in bytes or followed " +
+                                "by 'k', 'm' or 'g', before the values of its groups are spilled to files. " +
+                                "The default, 0, never spills.",
+                        defaultValue = "0",
+                        possibleParameters = "Any number of bytes, optionally followed by 'k', 'm' or 'g'"),
+                @SystemParameter(name = "spillDirectory",
+                        description = "The existing directory that spilled values are written to.",
+                        defaultValue = "The 'java.io.tmpdir' system property",
+                        possibleParameters = "Any existing directory"),
+                @SystemParameter(name = "statePoolSize",
+                        description = "The number of emptied stores of exact medians a query keeps for reuse by " +
+                                "new groups. 0 disables the reuse.",
+                        defaultValue = "256",
+                        possibleParameters = "Any non-negative integer")
         },
         returnAttributes = @ReturnAttribute(
                 description = "Returns the median as a 'double' value for all data " +
                         "types, i.e., for 'int', 'long', 'double' and 'float'.",
                 type = {DataType.DOUBLE}),
-        examples = @Example(
-                syntax = "from InputStream#window.length(5)" +
-                        "\nselect stats:median(value) as medianOfValues" +
-                        "\ninsert into OutputStream;",
-                description = "This returns the median of the aggregated values as a 'double' " +
-                        "value with the arrival and expiry of each event within the sliding window length of five."
-        )
+        examples = {
+                @Example(
+                        syntax = "from InputStream#window.length(5)" +
+                                "\nselect stats:median(value) as medianOfValues" +
+                                "\ninsert into OutputStream;",
+                        description = "This returns the median of the aggregated values as a 'double' value " +
+                                "with the arrival and expiry of each event within the sliding window length " +
+                                "of five."
+                ),
+                @Example(
+                        syntax = "from InputStream#window.time(1 hour)" +
+                                "\nselect stats:median(latency, 0.01) as medianLatency" +
+                                "\ninsert into OutputStream;",
+                        description = "This returns the median of the latency values of the last hour within " +
+                                "a relative error of 1%, without retaining the values themselves."
+                )
+        }
 )
 public class MedianAttributeAggregator extends AttributeAggregatorExecutor<MedianAttributeAggregator.ExtensionState> {
-    private Map<Attribute.Type, ArrayList> arrayListMap = new HashMap<>();
-    private Attribute.Type type;
+    private static final String RELATIVE_ERROR = "relativeError";
+    private static final String STORAGE = "storage";
+    private static final String HEAP = "heap";
+    private static final String OFF_HEAP = "offHeap";
+    private static final String MEMORY_BUDGET = "memoryBudget";
+    private static final String SPILL_DIRECTORY = "spillDirectory";
+    private static final String STATE_POOL_SIZE = "statePoolSize";
+
+    private Supplier<OrderStatisticStore> storeSupplier;
+    private boolean batchMode;
+    private double relativeError;
+    private boolean offHeap;
+    private MemoryBudget memoryBudget;
+    private StorePool storePool;
+    private AggregatorMetrics metrics;
 
     @Override
     protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
@@ -96,93 +193,140 @@ public class MedianAttributeAggregator extends AttributeAggregatorExecutor<Media
                                                 boolean outputExpectsExpiredEvents,
                                                 ConfigReader configReader,
                                                 SiddhiQueryContext siddhiQueryContext) {
-        if (attributeExpressionExecutors.length != 1) {
-            throw new OperationNotSupportedException("Median aggregator has to have exactly 1 " +
-                    "parameter, currently " + attributeExpressionExecutors.length + " parameters are " +
+        if (attributeExpressionExecutors.length != 1 && attributeExpressionExecutors.length != 2) {
+            throw new OperationNotSupportedException("Median aggregator has to have 1 or 2 " +
+                    "parameters, currently " + attributeExpressionExecutors.length + " parameters are " +
                     "provided");
         }
 
         Attribute.Type type = attributeExpressionExecutors[0].getReturnType();
 
         if (type == DOUBLE || type == INT || type == FLOAT || type == LONG) {
-            this.type = type;
+            this.storeSupplier = OrderStatisticStore.supplierOf(type);
         } else {
             throw new OperationNotSupportedException("Median not supported for " + type);
         }
+        // Values of a batch are only added and then reset together, unless expired events are expected.
+        this.batchMode = processingMode == ProcessingMode.BATCH && !outputExpectsExpiredEvents;
 
-        arrayListMap.put(DOUBLE, new ArrayList<Double>());
-        arrayListMap.put(INT, new ArrayList<Integer>());
-        arrayListMap.put(FLOAT, new ArrayList<Float>());
-        arrayListMap.put(LONG, new ArrayList<Long>());
+        if (attributeExpressionExecutors.length == 2) {
+            if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppValidationException("The relative error parameter of the median aggregator " +
+                        "should be a constant");
+            }
+            Object value = ((ConstantExpressionExecutor) attributeExpressionExecutors[1]).getValue();
+            if (!(value instanceof Number)) {
+                throw new SiddhiAppValidationException("The relative error parameter of the median aggregator " +
+                        "should be numeric, but found " + value);
+            }
+            this.relativeError = ((Number) value).doubleValue();
+        } else {
+            String value = configReader.readConfig(RELATIVE_ERROR, "0");
+            try {
+                this.relativeError = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new SiddhiAppValidationException("The " + RELATIVE_ERROR + " system parameter of the " +
+                        "median aggregator should be numeric, but found " + value);
+            }
+        }
+        if (!(relativeError == 0 ||
+                (relativeError >= LogarithmicHistogram.MIN_RELATIVE_ERROR && relativeError < 1))) {
+            throw new SiddhiAppValidationException("Relative error of the median aggregator should be 0, or " +
+                    "at least " + LogarithmicHistogram.MIN_RELATIVE_ERROR + " and less than 1, but found " +
+                    relativeError);
+        }
+
+        String storage = configReader.readConfig(STORAGE, HEAP);
+        if (!HEAP.equals(storage) && !OFF_HEAP.equals(storage)) {
+            throw new SiddhiAppValidationException("The " + STORAGE + " system parameter of the median " +
+                    "aggregator should be '" + HEAP + "' or '" + OFF_HEAP + "', but found " + storage);
+        }
+        this.offHeap = OFF_HEAP.equals(storage);
+
+        String budget = configReader.readConfig(MEMORY_BUDGET, "0");
+        long budgetBytes;
+        try {
+            budgetBytes = MemoryBudget.parseBytes(budget);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new SiddhiAppValidationException("The " + MEMORY_BUDGET + " system parameter of the median " +
+                    "aggregator should be a number of bytes, but found " + budget);
+        }
+        if (budgetBytes < 0) {
+            throw new SiddhiAppValidationException("The " + MEMORY_BUDGET + " system parameter of the median " +
+                    "aggregator should not be negative, but found " + budget);
+        }
+        if (budgetBytes > 0) {
+            File spillDirectory = new File(configReader.readConfig(SPILL_DIRECTORY,
+                    System.getProperty("java.io.tmpdir")));
+            if (!spillDirectory.isDirectory()) {
+                throw new SiddhiAppValidationException("The " + SPILL_DIRECTORY + " system parameter of the " +
+                        "median aggregator should be an existing directory, but found " + spillDirectory);
+            }
+            this.memoryBudget = new MemoryBudget(budgetBytes, spillDirectory);
+        }
+
+        String poolSize = configReader.readConfig(STATE_POOL_SIZE, "256");
+        int poolCapacity;
+        try {
+            poolCapacity = Integer.parseInt(poolSize.trim());
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppValidationException("The " + STATE_POOL_SIZE + " system parameter of the median " +
+                    "aggregator should be an integer, but found " + poolSize);
+        }
+        if (poolCapacity < 0) {
+            throw new SiddhiAppValidationException("The " + STATE_POOL_SIZE + " system parameter of the median " +
+                    "aggregator should not be negative, but found " + poolSize);
+        }
+        this.storePool = new StorePool(this::newStore, poolCapacity);
+        this.metrics = AggregatorMetrics.create(siddhiQueryContext, "stats:median");
 
         return ExtensionState::new;
     }
 
+    private OrderStatisticStore newStore() {
+        OrderStatisticStore store = storeSupplier.get();
+        if (batchMode) {
+            store.enableBatchMode();
+        }
+        if (offHeap) {
+            store.enableOffHeapStorage();
+        }
+        if (memoryBudget != null) {
+            store.setMemoryBudget(memoryBudget);
+        }
+        return store;
+    }
+
     public Attribute.Type getReturnType() {
-        return this.type;
+        return DOUBLE;
     }
 
-    @SuppressWarnings({"unchecked", "RedundantCast"})
     @Override
     public Object processAdd(Object data, ExtensionState state) {
-        switch (this.type) {
-            case DOUBLE:
-                (this.arrayListMap.get(this.type)).add((Double) data);
-                break;
-            case INT:
-                (this.arrayListMap.get(this.type)).add((Integer) data);
-                break;
-            case FLOAT:
-                (this.arrayListMap.get(this.type)).add((Float) data);
-                break;
-            case LONG:
-                (this.arrayListMap.get(this.type)).add((Long) data);
-                break;
-            default:
-                throw new OperationNotSupportedException("Median not supported for " + this.type);
-        }
-        state.count++;
-        state.median = getMedian(state);
-        return state.median;
+        return state.combiner.apply(data, true);
     }
 
     @Override
     public Object processRemove(Object data, ExtensionState state) {
-        (this.arrayListMap.get(this.type)).remove(data);
-        state.count--;
-        state.median = getMedian(state);
-        return state.median;
-    }
-
-    @SuppressWarnings("unchecked")
-    private double getMedian(ExtensionState state) {
-        Collections.sort(this.arrayListMap.get(this.type));
-
-        int midPointA = state.count / 2;
-        if (state.count % 2 == 0) {
-            int midPointB = midPointA - 1;
-            return ((Double) (this.arrayListMap.get(this.type)).get(midPointA)
-                    + (Double) (this.arrayListMap.get(this.type)).get(midPointB)) / 2.0;
-        }
-
-        return (Double) (this.arrayListMap.get(this.type)).get(midPointA);
+        return state.combiner.apply(data, false);
     }
 
+    @Override
     public Object processAdd(Object[] data, ExtensionState state) {
-        return new IllegalStateException("Median cannot process data array, but found " +
-                Arrays.deepToString(data));
+        return state.combiner.apply(data[0], true);
     }
 
+    @Override
     public Object processRemove(Object[] data, ExtensionState state) {
-        return new IllegalStateException("Median cannot process data array, but found " +
-                Arrays.deepToString(data));
+        return state.combiner.apply(data[0], false);
     }
 
     @Override
     public Object reset(ExtensionState state) {
-        state.count = 0;
-        state.median = 0.0;
-        return state.median;
+        return state.combiner.exclusively(() -> {
+            state.clear();
+            return 0.0;
+        });
     }
 
     public void start() {
@@ -191,31 +335,175 @@ public class MedianAttributeAggregator extends AttributeAggregatorExecutor<Media
     public void stop() {
     }
 
-    class ExtensionState extends State {
-        private int count = 0;
-        private double median;
+    /**
+     * Holds either the values themselves, for the exact median, or a histogram of them, when a relative
+     * error is allowed.
+     * <p>
+     * Queries fed by an asynchronous stream with several workers may update the state from several threads
+     * at once, so updates go through a combiner that applies them one at a time, and answers each batch of
+     * them with a single median.
+     * <p>
+     * The store of the exact median is taken from the pool of the query when the first value is added, and
+     * handed back once the state is emptied and destroyed, see {@link #canDestroy()}.
+     */
+    class ExtensionState extends State implements UpdateCombiner.Target, AggregatorMetrics.Measured {
+        private OrderStatisticStore values;
+        private LogarithmicHistogram histogram;
+        private final UpdateCombiner combiner = new UpdateCombiner(this);
+
+        ExtensionState() {
+            if (relativeError > 0) {
+                histogram = new LogarithmicHistogram(relativeError);
+            }
+            if (metrics != null) {
+                metrics.register(this);
+            }
+        }
+
+        private void add(Object value) {
+            if (histogram != null) {
+                histogram.add(((Number) value).doubleValue());
+            } else {
+                acquireValues().add(value);
+            }
+        }
+
+        private void remove(Object value) {
+            if (histogram != null) {
+                histogram.remove(((Number) value).doubleValue());
+            } else if (values != null) {
+                values.remove(value);
+            }
+        }
+
+        private void clear() {
+            if (histogram != null) {
+                histogram.clear();
+            } else if (values != null) {
+                values.clear();
+            }
+        }
+
+        private double median() {
+            if (histogram != null) {
+                return histogram.median();
+            }
+            return values != null ? values.median() : 0.0;
+        }
+
+        private OrderStatisticStore acquireValues() {
+            if (values == null) {
+                values = storePool.acquire();
+            }
+            return values;
+        }
+
+        @Override
+        public void apply(Object value, boolean add) {
+            if (value == null) {
+                return;
+            }
+            if (add) {
+                add(value);
+            } else {
+                remove(value);
+            }
+            if (metrics != null) {
+                if (add) {
+                    metrics.added();
+                } else {
+                    metrics.removed();
+                }
+            }
+        }
 
+        @Override
+        public Object result() {
+            if (metrics == null || !metrics.resultStarted()) {
+                return median();
+            }
+            double median = median();
+            metrics.resultFinished();
+            return median;
+        }
+
+        @Override
+        public long size() {
+            return combiner.exclusively(() -> {
+                if (histogram != null) {
+                    return histogram.size();
+                }
+                return values != null ? values.size() : 0L;
+            });
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return combiner.exclusively(() -> {
+                if (histogram != null) {
+                    return histogram.estimatedBytes();
+                }
+                return values != null ? values.estimatedBytes() : 0L;
+            });
+        }
+
+        /**
+         * Answers whether the state is empty, and if so hands its store back to the pool of the query.
+         * <p>
+         * State holders ask this of a group state whenever they are done with it, and discard the state as
+         * soon as the answer is yes, without notifying it in any other way. This is thus the only point at
+         * which the store can be handed back, and it has to be: off-heap memory, spill files and the memory
+         * budget taken are not released with the state. Should the state be used again after all, its next
+         * value takes another store from the pool, whose first snapshot is a full one.
+         */
         @Override
         public boolean canDestroy() {
-            return (arrayListMap.get(type)).size() == 0 && count == 0 && median == 0.0;
+            return combiner.exclusively(() -> {
+                if (histogram != null) {
+                    return histogram.isEmpty();
+                }
+                if (values != null && !values.isEmpty()) {
+                    return false;
+                }
+                releaseValues();
+                return true;
+            });
+        }
+
+        private void releaseValues() {
+            if (values != null) {
+                storePool.release(values);
+                values = null;
+            }
         }
 
         @Override
         public Map<String, Object> snapshot() {
-            Map<String, Object> state = new HashMap<>();
-            state.put("Median", this.median);
-            state.put("Count", this.count);
-            return state;
+            return combiner.exclusively(() -> {
+                Map<String, Object> state = new HashMap<>();
+                if (histogram != null) {
+                    state.put("Histogram", this.histogram.toBytes());
+                } else {
+                    // States emptied of their values hand their store back, and need no store to say so.
+                    state.put("Values", values != null ? values.snapshot() : OrderStatisticStore.emptySnapshot());
+                }
+                return state;
+            });
         }
 
         @Override
         public void restore(Map<String, Object> state) {
-            this.median = (Double) state.get("Median");
-            this.count = (Integer) state.get("Count");
+            combiner.exclusively(() -> {
+                if (histogram != null) {
+                    this.histogram = LogarithmicHistogram.fromBytes((byte[]) state.get("Histogram"));
+                } else {
+                    SnapshotStateList snapshotStateList = (SnapshotStateList) state.get("Values");
+                    if (values != null || OrderStatisticStore.holdsValues(snapshotStateList)) {
+                        acquireValues().restore(snapshotStateList);
+                    }
+                }
+                return null;
+            });
         }
     }
 }
-
-
-
-
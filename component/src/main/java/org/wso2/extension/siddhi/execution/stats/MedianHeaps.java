@@ -0,0 +1,235 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import java.util.Arrays;
+
+/**
+ * Pair of binary heaps of {@code long} keys, the lower half in a max-heap and the upper half in a
+ * min-heap, so that a key is added in O(log n) time and the middle keys are read in constant time.
+ * <p>
+ * Unlike {@link OrderStatisticTree} the heaps cannot remove arbitrary keys, but they are cheaper to
+ * append to, which suits batch windows where the values of a batch are only ever added and then
+ * cleared together. Clearing them takes constant time and keeps their arrays for the next batch.
+ * <p>
+ * Keys that are already at hand, as when a batch is restored from a snapshot, are loaded in linear
+ * time by selecting the middle key with quickselect and heapifying each half in place, rather than by
+ * adding them one at a time.
+ */
+final class MedianHeaps {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] lower = new long[INITIAL_CAPACITY];
+    private long[] upper = new long[INITIAL_CAPACITY];
+    private int lowerCount;
+    private int upperCount;
+
+    int size() {
+        return lowerCount + upperCount;
+    }
+
+    boolean isEmpty() {
+        return lowerCount == 0;
+    }
+
+    long estimatedBytes() {
+        return (long) (lower.length + upper.length) * Long.BYTES;
+    }
+
+    void add(long key) {
+        if (lowerCount == 0 || key <= lower[0]) {
+            lower = push(lower, lowerCount++, key, true);
+        } else {
+            upper = push(upper, upperCount++, key, false);
+        }
+        if (lowerCount > upperCount + 1) {
+            upper = push(upper, upperCount++, pop(lower, lowerCount--, true), false);
+        } else if (upperCount > lowerCount) {
+            lower = push(lower, lowerCount++, pop(upper, upperCount--, false), true);
+        }
+    }
+
+    /**
+     * Returns the largest key of the lower half, which is the middle key when the size is odd.
+     */
+    long lowerMiddle() {
+        return lower[0];
+    }
+
+    /**
+     * Returns the smallest key of the upper half, which is the upper middle key when the size is even.
+     */
+    long upperMiddle() {
+        return upper[0];
+    }
+
+    void clear() {
+        lowerCount = 0;
+        upperCount = 0;
+    }
+
+    /**
+     * Replaces the contents with the first {@code count} of the given keys in O(n) time. The array is
+     * taken over by the heaps.
+     */
+    void load(long[] keys, int count) {
+        lowerCount = (count + 1) / 2;
+        upperCount = count - lowerCount;
+        if (count > 0) {
+            select(keys, 0, count - 1, lowerCount - 1);
+        }
+        upper = Arrays.copyOfRange(keys, lowerCount, Math.max(lowerCount + INITIAL_CAPACITY, count));
+        lower = keys.length >= INITIAL_CAPACITY ? keys : Arrays.copyOf(keys, INITIAL_CAPACITY);
+        heapify(lower, lowerCount, true);
+        heapify(upper, upperCount, false);
+    }
+
+    /**
+     * Encodes the keys in the format of {@link OrderStatisticTree#toBytes()}.
+     */
+    byte[] toBytes() {
+        long[] keys = new long[size()];
+        System.arraycopy(lower, 0, keys, 0, lowerCount);
+        System.arraycopy(upper, 0, keys, lowerCount, upperCount);
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                distinct++;
+            }
+        }
+        byte[] out = new byte[OrderStatisticTree.MAX_VAR_LONG_BYTES * (1 + 2 * distinct)];
+        int position = OrderStatisticTree.writeVarLong(out, 0, distinct);
+        long previous = 0;
+        for (int i = 0; i < keys.length; ) {
+            int end = i + 1;
+            while (end < keys.length && keys[end] == keys[i]) {
+                end++;
+            }
+            position = OrderStatisticTree.writeVarLong(out, position, keys[i] - previous);
+            position = OrderStatisticTree.writeVarLong(out, position, end - i);
+            previous = keys[i];
+            i = end;
+        }
+        return Arrays.copyOf(out, position);
+    }
+
+    /**
+     * Adds all keys to the given tree and empties the heaps.
+     */
+    void moveTo(OrderStatisticTree tree) {
+        for (int i = 0; i < lowerCount; i++) {
+            tree.add(lower[i]);
+        }
+        for (int i = 0; i < upperCount; i++) {
+            tree.add(upper[i]);
+        }
+        clear();
+    }
+
+    private static long[] push(long[] heap, int count, long key, boolean max) {
+        if (count == heap.length) {
+            heap = Arrays.copyOf(heap, count * 2);
+        }
+        int child = count;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (max ? heap[parent] >= key : heap[parent] <= key) {
+                break;
+            }
+            heap[child] = heap[parent];
+            child = parent;
+        }
+        heap[child] = key;
+        return heap;
+    }
+
+    private static long pop(long[] heap, int count, boolean max) {
+        long top = heap[0];
+        siftDown(heap, count - 1, 0, heap[count - 1], max);
+        return top;
+    }
+
+    /**
+     * Places the given key at the given position, or below it, in a heap of the given size.
+     */
+    private static void siftDown(long[] heap, int count, int parent, long key, boolean max) {
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && (max ? heap[child + 1] > heap[child] : heap[child + 1] < heap[child])) {
+                child++;
+            }
+            if (max ? key >= heap[child] : key <= heap[child]) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = key;
+    }
+
+    private static void heapify(long[] heap, int count, boolean max) {
+        for (int parent = count / 2 - 1; parent >= 0; parent--) {
+            siftDown(heap, count, parent, heap[parent], max);
+        }
+    }
+
+    /**
+     * Partially orders the keys between the given bounds, inclusive, so that the key at the given rank
+     * is in place, with no greater key before it and no smaller key after it. Falls back to sorting
+     * if partitioning does not converge, so that it never takes more than O(n log n) time.
+     */
+    private static void select(long[] keys, int from, int to, int rank) {
+        int partitionsLeft = 2 * (32 - Integer.numberOfLeadingZeros(to - from + 1));
+        while (to > from) {
+            if (partitionsLeft-- == 0) {
+                Arrays.sort(keys, from, to + 1);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            long pivot = medianOfThree(keys[from], keys[middle], keys[to]);
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    long swap = keys[i];
+                    keys[i++] = keys[j];
+                    keys[j--] = swap;
+                }
+            }
+            if (rank <= j) {
+                to = j;
+            } else if (rank >= i) {
+                from = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static long medianOfThree(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.query.selector.attribute.aggregator.incremental.IncrementalAttributeAggregator;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.Expression;
+
+import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
+import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
+import static io.siddhi.query.api.definition.Attribute.Type.INT;
+import static io.siddhi.query.api.definition.Attribute.Type.LONG;
+
+/**
+ * Incremental aggregation counterpart of {@link MedianAttributeAggregator}.
+ * <p>
+ * The exact median of a bucket cannot be derived from the medians of its sub buckets, so each bucket
+ * keeps a t-digest of its values instead. Digests of the finer durations are merged into those of the
+ * coarser ones, and the median is estimated from the digest when the aggregation is retrieved.
+ */
+
+@Extension(
+        name = "median",
+        namespace = "incrementalAggregator",
+        description = "This extension returns an estimate of the median of the values aggregated by an " +
+                "incremental aggregation. Each bucket keeps a t-digest of its values, which is merged " +
+                "when rolling seconds up into minutes, hours and beyond, so the memory used per bucket " +
+                "stays bounded. The result is exact for buckets of a few values and approximate for " +
+                "larger ones.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its median.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the estimated median as a 'double' value.",
+                type = {DataType.DOUBLE}),
+        examples = @Example(
+                syntax = "define aggregation TradeAggregation" +
+                        "\nfrom TradeStream" +
+                        "\nselect symbol, stats:median(price) as medianPrice" +
+                        "\ngroup by symbol" +
+                        "\naggregate by timestamp every sec...year;",
+                description = "This keeps the median price of each symbol for every second, minute, hour, " +
+                        "day, month and year."
+        )
+)
+public class MedianIncrementalAttributeAggregator extends IncrementalAttributeAggregator {
+    private Attribute[] baseAttributes;
+    private Expression[] baseAttributesInitialValues;
+
+    @Override
+    public void init(String attributeName, Attribute.Type attributeType) {
+        if (attributeType != DOUBLE && attributeType != INT && attributeType != FLOAT && attributeType != LONG) {
+            throw new OperationNotSupportedException("Median not supported for " + attributeType);
+        }
+        Attribute digest = new Attribute("AGG_MEDIAN_DIGEST_".concat(attributeName), Attribute.Type.OBJECT);
+        this.baseAttributes = new Attribute[]{digest};
+        this.baseAttributesInitialValues = new Expression[]{
+                Expression.function("stats", "createDigest", Expression.variable(attributeName))};
+    }
+
+    @Override
+    public Expression aggregate() {
+        return Expression.function("stats", "digestPercentile",
+                Expression.variable(baseAttributes[0].getName()), Expression.value(50.0));
+    }
+
+    @Override
+    public Attribute[] getBaseAttributes() {
+        return baseAttributes;
+    }
+
+    @Override
+    public Expression[] getBaseAttributeInitialValues() {
+        return baseAttributesInitialValues;
+    }
+
+    @Override
+    public Expression[] getBaseAggregators() {
+        return new Expression[]{
+                Expression.function("stats", "mergeDigest", Expression.variable(baseAttributes[0].getName()))};
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return DOUBLE;
+    }
+}
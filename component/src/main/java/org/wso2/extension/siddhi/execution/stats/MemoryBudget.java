@@ -0,0 +1,78 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory shared by the stores of a query, e.g. those of all its groups. A store that takes the memory
+ * in use past the budget spills its values to a file in the spill directory, see
+ * {@link OrderStatisticStore#setMemoryBudget(MemoryBudget)}.
+ */
+final class MemoryBudget {
+    private final long limit;
+    private final File spillDirectory;
+    private final AtomicLong used = new AtomicLong();
+
+    MemoryBudget(long limit, File spillDirectory) {
+        this.limit = limit;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Parses a number of bytes, optionally followed by k, m or g for kilo, mega and gigabytes.
+     *
+     * @throws NumberFormatException if the value is not a number of bytes
+     */
+    static long parseBytes(String value) {
+        String bytes = value.trim().toLowerCase(Locale.ENGLISH);
+        long unit = 1;
+        switch (bytes.isEmpty() ? ' ' : bytes.charAt(bytes.length() - 1)) {
+            case 'k':
+                unit = 1L << 10;
+                break;
+            case 'm':
+                unit = 1L << 20;
+                break;
+            case 'g':
+                unit = 1L << 30;
+                break;
+            default:
+                return Long.parseLong(bytes);
+        }
+        return Math.multiplyExact(Long.parseLong(bytes.substring(0, bytes.length() - 1).trim()), unit);
+    }
+
+    File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * Accounts for memory taken, or given back if negative.
+     *
+     * @return false if the memory in use now exceeds the budget
+     */
+    boolean take(long bytes) {
+        return used.addAndGet(bytes) <= limit;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This extension merges the t-digests of aggregated events.
+ */
+
+@Extension(
+        name = "mergeDigest",
+        namespace = "stats",
+        description = "This extension merges the t-digests, created by 'stats:createDigest()', of aggregated " +
+                "events into a single digest. As values cannot be taken out of a digest once merged, " +
+                "this aggregator does not support expired events. Each event is answered with a digest of " +
+                "its own, which later events do not change.",
+        parameters = {
+                @Parameter(name = "digest",
+                        description = "The digest that needs to be merged.",
+                        type = {DataType.OBJECT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the merged t-digest as an 'object'.",
+                type = {DataType.OBJECT}),
+        examples = @Example(
+                syntax = "from InputStream#window.timeBatch(1 min)" +
+                        "\nselect stats:mergeDigest(latencyDigest) as latencyDigest" +
+                        "\ninsert into OutputStream;",
+                description = "This returns a digest summarising all the latency digests received within " +
+                        "each minute."
+        )
+)
+public class MergeDigestAttributeAggregator
+        extends AttributeAggregatorExecutor<MergeDigestAttributeAggregator.ExtensionState> {
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode,
+                                                boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 1) {
+            throw new OperationNotSupportedException("Merge digest aggregator has to have exactly 1 " +
+                    "parameter, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.OBJECT) {
+            throw new OperationNotSupportedException("Merge digest not supported for " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        return ExtensionState::new;
+    }
+
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.OBJECT;
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        if (!(data instanceof TDigest)) {
+            throw new OperationNotSupportedException("Merge digest expects a digest created by " +
+                    "stats:createDigest(), but found " + data);
+        }
+        state.digest.merge((TDigest) data);
+        // Digests handed out may be kept downstream, e.g. in the tables of an incremental aggregation, so
+        // hand out a copy that later events leave as it is.
+        return new TDigest(state.digest);
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        return new IllegalStateException("Merge digest cannot process data array, but found " +
+                Arrays.deepToString(data));
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        throw new OperationNotSupportedException("Merge digest does not support expired events, as merged " +
+                "values cannot be removed from a digest");
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        return new IllegalStateException("Merge digest cannot process data array, but found " +
+                Arrays.deepToString(data));
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        state.digest.clear();
+        return new TDigest(CreateDigestFunctionExecutor.DEFAULT_COMPRESSION);
+    }
+
+    public void start() {
+    }
+
+    public void stop() {
+    }
+
+    class ExtensionState extends State {
+        private TDigest digest = new TDigest(CreateDigestFunctionExecutor.DEFAULT_COMPRESSION);
+
+        @Override
+        public boolean canDestroy() {
+            return digest.size() == 0;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            Map<String, Object> state = new HashMap<>();
+            state.put("Digest", this.digest.toBytes());
+            return state;
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            this.digest = TDigest.fromBytes((byte[]) state.get("Digest"));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
+import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
+import static io.siddhi.query.api.definition.Attribute.Type.INT;
+import static io.siddhi.query.api.definition.Attribute.Type.LONG;
+
+/**
+ * Base of the aggregators that return a statistic derived from the {@link WelfordMoments} of the
+ * aggregated values.
+ */
+abstract class MomentAttributeAggregator
+        extends AttributeAggregatorExecutor<MomentAttributeAggregator.ExtensionState> {
+
+    /**
+     * Returns the name of the statistic, for error messages.
+     */
+    abstract String statisticName();
+
+    abstract double statistic(WelfordMoments moments);
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode,
+                                                boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 1) {
+            throw new OperationNotSupportedException(statisticName() + " aggregator has to have exactly 1 " +
+                    "parameter, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+        Attribute.Type type = attributeExpressionExecutors[0].getReturnType();
+        if (type != DOUBLE && type != INT && type != FLOAT && type != LONG) {
+            throw new OperationNotSupportedException(statisticName() + " not supported for " + type);
+        }
+        return ExtensionState::new;
+    }
+
+    public Attribute.Type getReturnType() {
+        return DOUBLE;
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        if (data != null) {
+            state.moments.add(((Number) data).doubleValue());
+        }
+        return statistic(state.moments);
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        if (data != null) {
+            state.moments.remove(((Number) data).doubleValue());
+        }
+        return statistic(state.moments);
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        return new IllegalStateException(statisticName() + " cannot process data array, but found " +
+                Arrays.deepToString(data));
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        return new IllegalStateException(statisticName() + " cannot process data array, but found " +
+                Arrays.deepToString(data));
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        state.moments.clear();
+        return 0.0;
+    }
+
+    public void start() {
+    }
+
+    public void stop() {
+    }
+
+    static class ExtensionState extends State {
+        private final WelfordMoments moments = new WelfordMoments();
+
+        @Override
+        public boolean canDestroy() {
+            return moments.count() == 0;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            return moments.snapshot();
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            moments.restore(state);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+
+/**
+ * Monotonic double ended queue of {@code long} keys, giving the minimum or maximum of a window whose
+ * values expire in the order they arrived.
+ * <p>
+ * Each arrival is numbered. A new key first drops every key at the back of the queue that it beats,
+ * as those can no longer become the extreme before it expires, and an expiry drops the front key
+ * once its arrival number is reached. Every key is pushed and dropped at most once, so updates take
+ * amortized O(1) time, and the queue lives in primitive ring buffers that only grow.
+ */
+final class MonotonicDeque {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final boolean maximum;
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private long[] arrivals = new long[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    private long added;
+    private long expired;
+
+    /**
+     * @param maximum whether the queue tracks the maximum rather than the minimum
+     */
+    MonotonicDeque(boolean maximum) {
+        this.maximum = maximum;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns whether no arrival is left to expire.
+     */
+    boolean isExhausted() {
+        return added == expired;
+    }
+
+    long extreme() {
+        return keys[head];
+    }
+
+    void add(long key) {
+        while (size > 0 && beats(key, keys[index(size - 1)])) {
+            size--;
+        }
+        if (size == keys.length) {
+            grow();
+        }
+        keys[index(size)] = key;
+        arrivals[index(size)] = added++;
+        size++;
+    }
+
+    /**
+     * Counts an arrival that can never be the extreme, such as a null value.
+     */
+    void skip() {
+        added++;
+    }
+
+    /**
+     * Expires the oldest arrival, which must hold the given key if it is still in the queue.
+     */
+    void expire(long key) {
+        if (expired == added) {
+            return;
+        }
+        if (size > 0 && arrivals[head] == expired) {
+            if (keys[head] != key) {
+                throw new SiddhiAppRuntimeException("Window min and max require events to expire in the order " +
+                        "they arrived");
+            }
+            head = index(1);
+            size--;
+        }
+        expired++;
+    }
+
+    /**
+     * Expires the oldest arrival, which was skipped.
+     */
+    void expireSkipped() {
+        if (expired < added) {
+            expired++;
+        }
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+        added = 0;
+        expired = 0;
+    }
+
+    /**
+     * Returns the keys and their arrival numbers relative to the oldest unexpired arrival, from the
+     * front of the queue to the back, followed by the number of unexpired arrivals.
+     */
+    long[] toArray() {
+        long[] array = new long[size * 2 + 1];
+        for (int i = 0; i < size; i++) {
+            array[2 * i] = keys[index(i)];
+            array[2 * i + 1] = arrivals[index(i)] - expired;
+        }
+        array[size * 2] = added - expired;
+        return array;
+    }
+
+    void restore(long[] array) {
+        size = array.length / 2;
+        head = 0;
+        keys = new long[Math.max(INITIAL_CAPACITY, size)];
+        arrivals = new long[keys.length];
+        for (int i = 0; i < size; i++) {
+            keys[i] = array[2 * i];
+            arrivals[i] = array[2 * i + 1];
+        }
+        expired = 0;
+        added = array[size * 2];
+    }
+
+    private boolean beats(long key, long other) {
+        return maximum ? key >= other : key <= other;
+    }
+
+    private int index(int offset) {
+        return (head + offset) % keys.length;
+    }
+
+    private void grow() {
+        int headLength = keys.length - head;
+        long[] grownKeys = new long[keys.length * 2];
+        System.arraycopy(keys, head, grownKeys, 0, headLength);
+        System.arraycopy(keys, 0, grownKeys, headLength, head);
+        long[] grownArrivals = new long[arrivals.length * 2];
+        System.arraycopy(arrivals, head, grownArrivals, 0, headLength);
+        System.arraycopy(arrivals, 0, grownArrivals, headLength, head);
+        keys = grownKeys;
+        arrivals = grownArrivals;
+        head = 0;
+    }
+}
@@ -0,0 +1,767 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.util.snapshot.SnapshotRequest;
+import io.siddhi.core.util.snapshot.state.Snapshot;
+import io.siddhi.core.util.snapshot.state.SnapshotStateList;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Ordered multiset of numeric attribute values backed by an {@link OrderStatisticTree}.
+ * <p>
+ * There is one implementation per attribute type. Each maps its values onto order preserving
+ * {@code long} keys, so values are unboxed straight into the tree and never boxed again. Integral
+ * values are stored as they are, and floating point values use their IEEE 754 bits with the
+ * magnitude bits flipped for negative numbers, which orders them as {@link Double#compare} does.
+ * <p>
+ * Siddhi windows expire events in the order they arrived, so the store also keeps the tree node of
+ * each value in a ring of arrival slots. An expired value is then taken straight from the node at the
+ * head of the ring, and only values that are not expired in arrival order, or were restored from a
+ * snapshot, are searched for in the tree.
+ * <p>
+ * Values are first counted in a {@link CountingHistogram}, which is all that streams with a few
+ * distinct values, such as status codes or queue depths, ever need. Once it would hold more than
+ * {@link CountingHistogram#MAX_DISTINCT} distinct values, they are moved out of it for good.
+ * <p>
+ * In batch mode values are then appended to {@link MedianHeaps}, which answer the median without
+ * maintaining a tree. The heaps are moved into the tree only when something they cannot do is asked
+ * for, such as removing a value, and are used again once the store is cleared.
+ * <p>
+ * With off-heap storage the tree is kept in direct buffers, and neither arrival slots nor heaps are
+ * used, so that the Java heap holds next to nothing per value however large the store grows.
+ * <p>
+ * Stores may share a {@link MemoryBudget}. A store that takes the memory in use by them past the budget
+ * spills its values into a tree in a memory-mapped file, which then holds them, off the heap as well,
+ * until the store is emptied or has shrunk by a factor of {@link #UNSPILL_FACTOR} since. Any values left
+ * then move back into the storage of the store, which spills them again should the budget still be
+ * exceeded. An emptied store gives its memory back to the budget, and its file up.
+ * <p>
+ * To support incremental persistence the store logs the keys added and removed since the last
+ * snapshot, and hands out only that change log while it is smaller than the store itself.
+ */
+abstract class OrderStatisticStore {
+    private static final int MIN_CHANGE_LOG_CAPACITY = 16;
+    private static final int MAX_OFF_HEAP_CHANGE_LOG_CAPACITY = 1 << 16;
+    private static final int MIN_ARRIVAL_CAPACITY = 16;
+    private static final double RANK_TOLERANCE = 1e-9;
+    private static final long[] NO_KEYS = new long[0];
+    private static final int MAX_RECYCLED_CAPACITY = 1024;
+    private static final int UNSPILL_FACTOR = 4;
+
+    OrderStatisticTree tree = new OrderStatisticTree.OnHeap();
+    private boolean offHeap;
+    private boolean offHeapStorage;
+    private MemoryBudget budget;
+    private long budgetedBytes;
+    private int spilledSize;
+    private CountingHistogram counts = new CountingHistogram();
+    private CountingHistogram spentCounts;
+    private MedianHeaps spareHeaps;
+    private int[] arrivals = new int[MIN_ARRIVAL_CAPACITY];
+    private int arrivalHead;
+    private int arrivalCount;
+    private int untrackedCount;
+    private boolean tracksArrivals = true;
+    private MedianHeaps heaps;
+    private boolean batchMode;
+    private double median;
+    private boolean medianStale = true;
+    private int[] ranks;
+    private long[] selectedKeys;
+    private long[] addedKeys = NO_KEYS;
+    private long[] removedKeys = NO_KEYS;
+    private int addedCount;
+    private int removedCount;
+    private boolean forceFullSnapshot = true;
+
+    static Supplier<OrderStatisticStore> supplierOf(Attribute.Type type) {
+        switch (type) {
+            case INT:
+                return IntStore::new;
+            case LONG:
+                return LongStore::new;
+            case FLOAT:
+                return FloatStore::new;
+            case DOUBLE:
+                return DoubleStore::new;
+            default:
+                throw new OperationNotSupportedException("Order statistics not supported for " + type);
+        }
+    }
+
+    abstract long encode(Object value);
+
+    abstract double decode(long key);
+
+    /**
+     * Appends values to {@link MedianHeaps} while no value is removed from the store.
+     */
+    void enableBatchMode() {
+        batchMode = true;
+        useHeapsInBatchMode();
+    }
+
+    /**
+     * Keeps the values outside the Java heap once they outgrow the counting histogram. Has to be called
+     * while the store is empty.
+     */
+    void enableOffHeapStorage() {
+        offHeap = true;
+        offHeapStorage = true;
+        tree = new OrderStatisticTree.OffHeap();
+        tracksArrivals = false;
+    }
+
+    /**
+     * Accounts for the memory taken by the store in the given budget, and spills the values to a file
+     * once the budget is exceeded. Has to be called while the store is empty.
+     */
+    void setMemoryBudget(MemoryBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Hands the memory of an empty store back, off-heap memory for reuse and a spill file for good, and
+     * returns the store to its own storage. The store remains usable.
+     */
+    void free() {
+        if (!isEmpty()) {
+            return;
+        }
+        if (tree instanceof OrderStatisticTree.Mapped) {
+            tree.free();
+            tree = offHeapStorage ? new OrderStatisticTree.OffHeap() : new OrderStatisticTree.OnHeap();
+            offHeap = offHeapStorage;
+            resetArrivals(0);
+            useHeapsInBatchMode();
+        } else if (offHeap || budget != null) {
+            tree.free();
+        }
+        if (budget != null) {
+            arrivals = new int[MIN_ARRIVAL_CAPACITY];
+            // The state may be destroyed once it is empty, so nothing stays accounted to it.
+            budget.take(-budgetedBytes);
+            budgetedBytes = 0;
+        }
+    }
+
+    void add(Object value) {
+        long key = encode(value);
+        medianStale = true;
+        if (counts != null) {
+            if (counts.add(key)) {
+                logChange(key, true);
+                return;
+            }
+            moveCountsOut();
+        }
+        if (heaps != null) {
+            heaps.add(key);
+            logChange(key, true);
+        } else {
+            int node = tree.add(key);
+            if (tracksArrivals) {
+                if (arrivalCount == arrivals.length) {
+                    growArrivals();
+                }
+                arrivals[(arrivalHead + arrivalCount++) % arrivals.length] = node;
+            }
+            logChange(key, true);
+        }
+        if (budget != null) {
+            account();
+        }
+    }
+
+    boolean remove(Object value) {
+        long key = encode(value);
+        if (counts != null) {
+            if (!counts.remove(key)) {
+                return false;
+            }
+            medianStale = true;
+            logChange(key, false);
+            return true;
+        }
+        moveHeapsToTree();
+        if (!removeOldest(key)) {
+            if (!tree.remove(key)) {
+                return false;
+            }
+            if (untrackedCount > 0) {
+                untrackedCount--;
+            }
+        }
+        medianStale = true;
+        if (tree.isEmpty()) {
+            resetArrivals(0);
+            useHeapsInBatchMode();
+            if (budget != null) {
+                // Windows that are not grouped never destroy their state, so the memory is given back now.
+                free();
+            }
+        } else if (tree instanceof OrderStatisticTree.Mapped && tree.size() <= spilledSize / UNSPILL_FACTOR) {
+            unspill();
+        }
+        logChange(key, false);
+        return true;
+    }
+
+    /**
+     * Removes the given key through the node of the oldest tracked arrival, if that is where it is held.
+     */
+    private boolean removeOldest(long key) {
+        if (!tracksArrivals || untrackedCount > 0 || arrivalCount == 0) {
+            return false;
+        }
+        if (tree.remove(arrivals[arrivalHead], key)) {
+            arrivalHead = (arrivalHead + 1) % arrivals.length;
+            arrivalCount--;
+            return true;
+        }
+        // Values are not expiring in arrival order, stop tracking them until the store is emptied.
+        tracksArrivals = false;
+        arrivals = new int[MIN_ARRIVAL_CAPACITY];
+        arrivalHead = 0;
+        arrivalCount = 0;
+        return false;
+    }
+
+    private void growArrivals() {
+        int[] grown = new int[arrivals.length * 2];
+        int headLength = Math.min(arrivalCount, arrivals.length - arrivalHead);
+        System.arraycopy(arrivals, arrivalHead, grown, 0, headLength);
+        System.arraycopy(arrivals, 0, grown, headLength, arrivalCount - headLength);
+        arrivals = grown;
+        arrivalHead = 0;
+    }
+
+    private void moveHeapsToTree() {
+        if (heaps != null) {
+            heaps.moveTo(tree);
+            heaps = null;
+            resetArrivals(tree.size());
+            if (budget != null) {
+                account();
+            }
+        }
+    }
+
+    /**
+     * Takes the change in the memory used by the store from the budget, spilling the values if the
+     * budget is exceeded. Values still in the counting histogram take too little memory to be worth it.
+     */
+    private void account() {
+        long bytes = estimatedBytes();
+        if (tree instanceof OrderStatisticTree.Mapped) {
+            bytes -= tree.estimatedBytes();
+        }
+        if (bytes != budgetedBytes) {
+            boolean withinBudget = budget.take(bytes - budgetedBytes);
+            budgetedBytes = bytes;
+            if (!withinBudget && counts == null && !(tree instanceof OrderStatisticTree.Mapped)) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Moves the values into a tree in a memory-mapped file, where they stay until the store is freed.
+     */
+    private void spill() {
+        if (heaps != null) {
+            heaps.moveTo(tree);
+            heaps = null;
+        }
+        OrderStatisticTree mapped = new OrderStatisticTree.Mapped(budget.getSpillDirectory());
+        mapped.copyFrom(tree);
+        if (offHeap) {
+            tree.free();
+        }
+        tree = mapped;
+        offHeap = true;
+        spilledSize = tree.size();
+        // The nodes of the values have changed, and arrivals are not tracked off the heap.
+        arrivals = new int[MIN_ARRIVAL_CAPACITY];
+        resetArrivals(tree.size());
+        discardChangeLog();
+        account();
+    }
+
+    /**
+     * Moves the values of a spilled store that has shrunk back into its own storage, giving up the file.
+     * Only a fraction of the values spilled are moved, so that a store hovering around the budget is not
+     * copied back and forth on every event.
+     */
+    private void unspill() {
+        OrderStatisticTree own = offHeapStorage ? new OrderStatisticTree.OffHeap() : new OrderStatisticTree.OnHeap();
+        own.copyFrom(tree);
+        tree.free();
+        tree = own;
+        offHeap = offHeapStorage;
+        resetArrivals(tree.size());
+        account();
+    }
+
+    private void useHeapsInBatchMode() {
+        if (batchMode && !offHeap && heaps == null && counts == null && tree.isEmpty()) {
+            heaps = newHeaps();
+        }
+    }
+
+    private MedianHeaps newHeaps() {
+        MedianHeaps reused = spareHeaps;
+        spareHeaps = null;
+        return reused != null ? reused : new MedianHeaps();
+    }
+
+    /**
+     * Moves the values out of the counting histogram once it has run out of distinct keys, into the
+     * heaps in batch mode and into the tree otherwise.
+     */
+    private void moveCountsOut() {
+        if (batchMode && !offHeap) {
+            heaps = newHeaps();
+            counts.moveTo(heaps);
+        } else {
+            counts.moveTo(tree);
+            resetArrivals(tree.size());
+        }
+        spentCounts = counts;
+        counts = null;
+    }
+
+    /**
+     * Forgets all arrival slots and resumes tracking, treating the given number of values already in
+     * the store as the oldest ones.
+     */
+    private void resetArrivals(int untracked) {
+        arrivalHead = 0;
+        arrivalCount = 0;
+        untrackedCount = untracked;
+        tracksArrivals = !offHeap;
+    }
+
+    /**
+     * Returns the value at the given zero based rank in ascending order.
+     */
+    double select(int rank) {
+        if (counts != null) {
+            return decode(counts.select(rank));
+        }
+        moveHeapsToTree();
+        return decode(tree.select(rank));
+    }
+
+    /**
+     * Returns the given percentile of the values, either interpolating linearly between the two closest
+     * ranks, so that the 50th percentile is the median, or taking the value at the nearest rank.
+     */
+    double percentile(double percent, boolean interpolate) {
+        int size = size();
+        if (size == 0) {
+            return 0.0;
+        }
+        if (!interpolate) {
+            return select(nearestRank(percent, size));
+        }
+        double position = percent * (size - 1) / 100;
+        int lower = (int) position;
+        double lowerValue = select(lower);
+        if (lower >= size - 1 || position == lower) {
+            return lowerValue;
+        }
+        return lowerValue + (position - lower) * (select(lower + 1) - lowerValue);
+    }
+
+    /**
+     * Computes several percentiles as {@link #percentile(double, boolean)} does, selecting all the ranks
+     * they need in a single traversal of the tree.
+     *
+     * @param out receives the percentile of each of the given percents, at the same index
+     */
+    void percentiles(double[] percents, boolean interpolate, double[] out) {
+        int size = size();
+        if (size == 0) {
+            Arrays.fill(out, 0, percents.length, 0.0);
+            return;
+        }
+        moveHeapsToTree();
+        int rankCount = 0;
+        ensureRankCapacity(2 * percents.length);
+        for (double percent : percents) {
+            if (interpolate) {
+                int lower = (int) (percent * (size - 1) / 100);
+                ranks[rankCount++] = lower;
+                ranks[rankCount++] = Math.min(size - 1, lower + 1);
+            } else {
+                ranks[rankCount++] = nearestRank(percent, size);
+            }
+        }
+        Arrays.sort(ranks, 0, rankCount);
+        if (counts != null) {
+            counts.select(ranks, rankCount, selectedKeys);
+        } else {
+            tree.select(ranks, rankCount, selectedKeys);
+        }
+        for (int i = 0; i < percents.length; i++) {
+            if (interpolate) {
+                double position = percents[i] * (size - 1) / 100;
+                int lower = (int) position;
+                double lowerValue = selectedValue(lower, rankCount);
+                out[i] = lower >= size - 1 || position == lower ? lowerValue :
+                        lowerValue + (position - lower) * (selectedValue(lower + 1, rankCount) - lowerValue);
+            } else {
+                out[i] = selectedValue(nearestRank(percents[i], size), rankCount);
+            }
+        }
+    }
+
+    /**
+     * Returns the smallest zero based rank covering the given percentile, tolerating rounding errors
+     * of the product.
+     */
+    private static int nearestRank(double percent, int size) {
+        int rank = (int) Math.ceil(percent * size / 100 - RANK_TOLERANCE);
+        return Math.max(0, Math.min(size - 1, rank - 1));
+    }
+
+    private double selectedValue(int rank, int rankCount) {
+        return decode(selectedKeys[Arrays.binarySearch(ranks, 0, rankCount, rank)]);
+    }
+
+    private void ensureRankCapacity(int capacity) {
+        if (ranks == null || ranks.length < capacity) {
+            ranks = new int[capacity];
+            selectedKeys = new long[capacity];
+        }
+    }
+
+    /**
+     * Returns the median, which is only computed when first asked for after the store has changed.
+     */
+    double median() {
+        if (medianStale) {
+            median = computeMedian();
+            medianStale = false;
+        }
+        return median;
+    }
+
+    private double computeMedian() {
+        if (heaps != null) {
+            if (heaps.isEmpty()) {
+                return 0.0;
+            } else if (heaps.size() % 2 == 0) {
+                return (decode(heaps.upperMiddle()) + decode(heaps.lowerMiddle())) / 2.0;
+            }
+            return decode(heaps.lowerMiddle());
+        }
+        int size = size();
+        if (size == 0) {
+            return 0.0;
+        }
+        int midPoint = size / 2;
+        if (size % 2 == 0) {
+            return (select(midPoint) + select(midPoint - 1)) / 2.0;
+        }
+        return select(midPoint);
+    }
+
+    int size() {
+        if (counts != null) {
+            return counts.size();
+        }
+        return heaps != null ? heaps.size() : tree.size();
+    }
+
+    boolean isEmpty() {
+        if (counts != null) {
+            return counts.isEmpty();
+        }
+        return heaps != null ? heaps.isEmpty() : tree.isEmpty();
+    }
+
+    /**
+     * Returns the number of bytes taken by the values and the structures kept alongside them, including
+     * those of an off-heap tree.
+     */
+    long estimatedBytes() {
+        long bytes = tree.estimatedBytes() + (long) arrivals.length * Integer.BYTES +
+                (long) (addedKeys.length + removedKeys.length) * Long.BYTES;
+        if (counts != null) {
+            bytes += counts.estimatedBytes();
+        }
+        if (heaps != null) {
+            bytes += heaps.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    void clear() {
+        if (counts != null) {
+            counts.clear();
+        }
+        tree.clear();
+        medianStale = true;
+        if (heaps != null) {
+            heaps.clear();
+        }
+        resetArrivals(0);
+        useHeapsInBatchMode();
+        discardChangeLog();
+        if (budget != null) {
+            free();
+        }
+    }
+
+    /**
+     * Empties the store and returns it to the state of a new store, so that it can be handed to another
+     * group. Memory beyond that of a small store is given up rather than kept for reuse.
+     */
+    void recycle() {
+        clear();
+        free();
+        if (tree.capacity() > MAX_RECYCLED_CAPACITY) {
+            tree.free();
+        }
+        if (arrivals.length > MAX_RECYCLED_CAPACITY) {
+            arrivals = new int[MIN_ARRIVAL_CAPACITY];
+        }
+        if (heaps != null) {
+            if (heaps.estimatedBytes() <= 2L * MAX_RECYCLED_CAPACITY * Long.BYTES) {
+                spareHeaps = heaps;
+            }
+            heaps = null;
+        }
+        if (counts == null) {
+            counts = spentCounts;
+            spentCounts = null;
+        }
+    }
+
+    /**
+     * Returns the full contents, or only the changes since the previous snapshot when the change log
+     * is the smaller of the two and a full snapshot has not been requested.
+     */
+    Snapshot snapshot() {
+        Snapshot snapshot;
+        if (forceFullSnapshot || SnapshotRequest.isRequestForFullSnapshot()) {
+            if (counts != null) {
+                snapshot = new Snapshot(counts.toBytes(), false);
+            } else if (heaps != null) {
+                // Batches keep their heaps, which would otherwise be moved into the tree for good.
+                snapshot = new Snapshot(heaps.toBytes(), false);
+            } else {
+                snapshot = new Snapshot(tree.toBytes(), false);
+            }
+        } else {
+            snapshot = new Snapshot(changeLogToBytes(), true);
+        }
+        addedCount = 0;
+        removedCount = 0;
+        forceFullSnapshot = false;
+        return snapshot;
+    }
+
+    /**
+     * Returns a full snapshot of an empty store, for states that hold no store to take one from.
+     */
+    static Snapshot emptySnapshot() {
+        byte[] noKeys = new byte[OrderStatisticTree.MAX_VAR_LONG_BYTES];
+        return new Snapshot(Arrays.copyOf(noKeys, OrderStatisticTree.writeVarLong(noKeys, 0, 0)), false);
+    }
+
+    /**
+     * Returns whether the given snapshots may restore any value, so that states restoring none need not
+     * take a store. Full snapshots of every kind start with the number of distinct keys they hold.
+     */
+    static boolean holdsValues(SnapshotStateList snapshotStateList) {
+        for (Snapshot snapshot : snapshotStateList.getSnapshotStates().values()) {
+            if (snapshot.isIncrementalSnapshot() ||
+                    OrderStatisticTree.readVarLong(ByteBuffer.wrap((byte[]) snapshot.getState())) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void restore(SnapshotStateList snapshotStateList) {
+        if (counts != null) {
+            counts.moveTo(tree);
+        }
+        moveHeapsToTree();
+        medianStale = true;
+        for (Map.Entry<Long, Snapshot> entry : snapshotStateList.getSnapshotStates().entrySet()) {
+            Snapshot snapshot = entry.getValue();
+            if (snapshot.isIncrementalSnapshot()) {
+                applyChangeLog((byte[]) snapshot.getState());
+            } else {
+                tree.restore((byte[]) snapshot.getState());
+            }
+        }
+        if (counts != null) {
+            if (counts.restore(tree.toBytes())) {
+                tree.clear();
+            } else {
+                spentCounts = counts;
+                counts = null;
+            }
+        }
+        if (batchMode && !offHeap && counts == null && !tree.isEmpty()) {
+            // Values of a batch go back into heaps, to be appended to as before.
+            long[] keys = new long[tree.size()];
+            tree.toKeys(keys);
+            tree.free();
+            heaps = newHeaps();
+            heaps.load(keys, keys.length);
+        }
+        // Restored values come without their arrival order, but they are still the oldest ones.
+        resetArrivals(tree.size());
+        useHeapsInBatchMode();
+        discardChangeLog();
+        if (budget != null) {
+            account();
+        }
+    }
+
+    private void logChange(long key, boolean added) {
+        if (forceFullSnapshot) {
+            return;
+        }
+        // Off-heap stores cap the change log, which lives on the heap, rather than let it grow with them.
+        int capacity = offHeap ? Math.min(MAX_OFF_HEAP_CHANGE_LOG_CAPACITY, size()) : size();
+        if (addedCount + removedCount >= Math.max(MIN_CHANGE_LOG_CAPACITY, capacity)) {
+            // The change log has outgrown the store, a full snapshot is now the cheaper option.
+            discardChangeLog();
+        } else if (added) {
+            if (addedCount == addedKeys.length) {
+                addedKeys = Arrays.copyOf(addedKeys, Math.max(MIN_CHANGE_LOG_CAPACITY, addedCount * 2));
+            }
+            addedKeys[addedCount++] = key;
+        } else {
+            if (removedCount == removedKeys.length) {
+                removedKeys = Arrays.copyOf(removedKeys, Math.max(MIN_CHANGE_LOG_CAPACITY, removedCount * 2));
+            }
+            removedKeys[removedCount++] = key;
+        }
+    }
+
+    private void discardChangeLog() {
+        forceFullSnapshot = true;
+        addedCount = 0;
+        removedCount = 0;
+        addedKeys = NO_KEYS;
+        removedKeys = NO_KEYS;
+    }
+
+    private byte[] changeLogToBytes() {
+        byte[] out = new byte[(2 + addedCount + removedCount) * OrderStatisticTree.MAX_VAR_LONG_BYTES];
+        int position = writeSortedKeys(out, 0, addedKeys, addedCount);
+        position = writeSortedKeys(out, position, removedKeys, removedCount);
+        return Arrays.copyOf(out, position);
+    }
+
+    private static int writeSortedKeys(byte[] out, int position, long[] keys, int count) {
+        Arrays.sort(keys, 0, count);
+        position = OrderStatisticTree.writeVarLong(out, position, count);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            position = OrderStatisticTree.writeVarLong(out, position, keys[i] - previous);
+            previous = keys[i];
+        }
+        return position;
+    }
+
+    private void applyChangeLog(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        long key = 0;
+        for (long i = OrderStatisticTree.readVarLong(in); i > 0; i--) {
+            key += OrderStatisticTree.readVarLong(in);
+            tree.add(key);
+        }
+        key = 0;
+        for (long i = OrderStatisticTree.readVarLong(in); i > 0; i--) {
+            key += OrderStatisticTree.readVarLong(in);
+            tree.remove(key);
+        }
+    }
+
+    static long encodeDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    static double decodeDouble(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+
+    static final class IntStore extends OrderStatisticStore {
+        @Override
+        long encode(Object value) {
+            return (Integer) value;
+        }
+
+        @Override
+        double decode(long key) {
+            return key;
+        }
+    }
+
+    static final class LongStore extends OrderStatisticStore {
+        @Override
+        long encode(Object value) {
+            return (Long) value;
+        }
+
+        @Override
+        double decode(long key) {
+            return key;
+        }
+    }
+
+    static final class FloatStore extends OrderStatisticStore {
+        @Override
+        long encode(Object value) {
+            return encodeDouble((Float) value);
+        }
+
+        @Override
+        double decode(long key) {
+            return decodeDouble(key);
+        }
+    }
+
+    static final class DoubleStore extends OrderStatisticStore {
+        @Override
+        long encode(Object value) {
+            return encodeDouble((Double) value);
+        }
+
+        @Override
+        double decode(long key) {
+            return decodeDouble(key);
+        }
+    }
+}
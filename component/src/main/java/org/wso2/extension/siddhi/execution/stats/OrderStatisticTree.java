@@ -0,0 +1,1075 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * AVL tree of {@code long} keys augmented with subtree sizes, so that insertion, removal and selection
+ * of the key at a given rank all take O(log n) time.
+ * <p>
+ * Equal keys share a single node holding their multiplicity. Nodes are numbered, node 0 being the
+ * empty sentinel, and freed nodes are recycled so a warmed up tree does not allocate. See
+ * {@link OrderStatisticStore} for how attribute values are mapped to keys.
+ * <p>
+ * Node fields are kept either in parallel primitive arrays, see {@link OnHeap}, outside the Java heap,
+ * see {@link OffHeap}, or in a memory-mapped file, see {@link Mapped}. {@link Weighted} further
+ * augments the nodes with the sum of the weights of their subtrees.
+ */
+abstract class OrderStatisticTree {
+    private static final int NIL = 0;
+    private static final int INITIAL_CAPACITY = 8;
+    static final int MAX_VAR_LONG_BYTES = 10;
+    private static final int MAX_VAR_INT_BYTES = 5;
+
+    private int root = NIL;
+    private int freeList = NIL;
+    private int nextUnused = 1;
+
+    int size() {
+        return root == NIL ? 0 : subtreeSize(root);
+    }
+
+    boolean isEmpty() {
+        return root == NIL;
+    }
+
+    int root() {
+        return root;
+    }
+
+    /**
+     * Returns the node holding the given key, or the sentinel if the key is not present.
+     */
+    int find(long key) {
+        int node = root;
+        while (node != NIL) {
+            int cmp = Long.compare(key, key(node));
+            if (cmp == 0) {
+                return node;
+            }
+            node = cmp < 0 ? left(node) : right(node);
+        }
+        return NIL;
+    }
+
+    /**
+     * Adds one occurrence of the given key.
+     *
+     * @return the node now holding the key, which stays valid until its last occurrence is removed
+     */
+    int add(long key) {
+        return add(key, 1);
+    }
+
+    /**
+     * Adds the given number of occurrences of the given key.
+     *
+     * @return the node now holding the key
+     */
+    int add(long key, int count) {
+        if (root == NIL) {
+            root = newNode(key, count, NIL);
+            return root;
+        }
+        int node = root;
+        while (true) {
+            int cmp = Long.compare(key, key(node));
+            if (cmp == 0) {
+                setCount(node, count(node) + count);
+                retrace(node);
+                return node;
+            }
+            int child = cmp < 0 ? left(node) : right(node);
+            if (child == NIL) {
+                child = newNode(key, count, node);
+                if (cmp < 0) {
+                    setLeft(node, child);
+                } else {
+                    setRight(node, child);
+                }
+                retrace(node);
+                return child;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Removes one occurrence of the given key.
+     *
+     * @return false if the key is not present
+     */
+    boolean remove(long key) {
+        int node = find(key);
+        return node != NIL && remove(node, key);
+    }
+
+    /**
+     * Removes one occurrence of the given key from the given node, as returned by {@link #add(long)},
+     * without searching the tree.
+     *
+     * @return false if the node no longer holds the key
+     */
+    boolean remove(int node, long key) {
+        if (node <= NIL || node >= nextUnused || count(node) == 0 || key(node) != key) {
+            return false;
+        }
+        setCount(node, count(node) - 1);
+        if (count(node) > 0) {
+            retrace(node);
+        } else {
+            unlink(node);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the key at the given zero based rank in ascending order.
+     */
+    long select(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " is out of range for size " + size());
+        }
+        int node = root;
+        while (true) {
+            int leftSize = subtreeSize(left(node));
+            if (rank < leftSize) {
+                node = left(node);
+            } else {
+                rank -= leftSize;
+                if (rank < count(node)) {
+                    return key(node);
+                }
+                rank -= count(node);
+                node = right(node);
+            }
+        }
+    }
+
+    /**
+     * Selects the keys at several zero based ranks in one descent of the tree, visiting each node on the
+     * paths to the requested ranks once, however many of them share it.
+     *
+     * @param ranks non-decreasing ranks, of which the first {@code count} are selected
+     * @param out   receives the key at each rank, at the same index
+     */
+    void select(int[] ranks, int count, long[] out) {
+        if (count == 0) {
+            return;
+        }
+        if (ranks[0] < 0 || ranks[count - 1] >= size()) {
+            throw new IndexOutOfBoundsException("Ranks " + ranks[0] + " to " + ranks[count - 1] +
+                    " are out of range for size " + size());
+        }
+        select(root, 0, ranks, 0, count, out);
+    }
+
+    private void select(int node, int offset, int[] ranks, int from, int to, long[] out) {
+        while (from < to) {
+            int nodeStart = offset + subtreeSize(left(node));
+            int nodeEnd = nodeStart + count(node);
+            int split = from;
+            while (split < to && ranks[split] < nodeStart) {
+                split++;
+            }
+            if (split > from) {
+                select(left(node), offset, ranks, from, split, out);
+            }
+            while (split < to && ranks[split] < nodeEnd) {
+                out[split++] = key(node);
+            }
+            from = split;
+            offset = nodeEnd;
+            node = right(node);
+        }
+    }
+
+    void clear() {
+        root = NIL;
+        freeList = NIL;
+        nextUnused = 1;
+    }
+
+    /**
+     * Encodes the tree contents as the number of distinct keys followed by each distinct key, in
+     * ascending order and delta encoded, and its multiplicity, all as variable length integers.
+     */
+    byte[] toBytes() {
+        int distinct = distinctKeys();
+        byte[] out = new byte[MAX_VAR_LONG_BYTES + distinct * (MAX_VAR_LONG_BYTES + MAX_VAR_INT_BYTES)];
+        int position = writeVarLong(out, 0, distinct);
+        long previous = 0;
+        for (int node = first(); node != NIL; node = successor(node)) {
+            position = writeVarLong(out, position, key(node) - previous);
+            position = writeVarLong(out, position, count(node));
+            previous = key(node);
+        }
+        return Arrays.copyOf(out, position);
+    }
+
+    /**
+     * Replaces the tree contents with those encoded by {@link #toBytes()}, building a perfectly
+     * balanced tree in O(n) time.
+     */
+    void restore(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        int distinct = (int) readVarLong(in);
+        reallocate(distinct + 1);
+        long key = 0;
+        for (int node = 1; node <= distinct; node++) {
+            key += readVarLong(in);
+            setKey(node, key);
+            setCount(node, (int) readVarLong(in));
+        }
+        freeList = NIL;
+        nextUnused = distinct + 1;
+        root = build(1, distinct, NIL);
+    }
+
+    /**
+     * Replaces the tree contents with those of the given tree, building a perfectly balanced tree in
+     * O(n) time without an intermediate copy.
+     */
+    void copyFrom(OrderStatisticTree source) {
+        int distinct = source.distinctKeys();
+        reallocate(distinct + 1);
+        int node = 1;
+        for (int from = source.first(); from != NIL; from = source.successor(from)) {
+            setKey(node, source.key(from));
+            setCount(node++, source.count(from));
+        }
+        freeList = NIL;
+        nextUnused = distinct + 1;
+        root = build(1, distinct, NIL);
+    }
+
+    /**
+     * Writes every occurrence of every key, in ascending order, to the given array, which has to hold
+     * {@link #size()} keys.
+     */
+    void toKeys(long[] out) {
+        int position = 0;
+        for (int node = first(); node != NIL; node = successor(node)) {
+            Arrays.fill(out, position, position + count(node), key(node));
+            position += count(node);
+        }
+    }
+
+    int distinctKeys() {
+        int distinct = nextUnused - 1;
+        for (int node = freeList; node != NIL; node = left(node)) {
+            distinct--;
+        }
+        return distinct;
+    }
+
+    private int build(int from, int to, int parentNode) {
+        if (from > to) {
+            return NIL;
+        }
+        int node = (from + to) >>> 1;
+        setParent(node, parentNode);
+        setLeft(node, build(from, node - 1, node));
+        setRight(node, build(node + 1, to, node));
+        update(node);
+        return node;
+    }
+
+    int first() {
+        int node = root;
+        if (node != NIL) {
+            while (left(node) != NIL) {
+                node = left(node);
+            }
+        }
+        return node;
+    }
+
+    int successor(int node) {
+        if (right(node) != NIL) {
+            node = right(node);
+            while (left(node) != NIL) {
+                node = left(node);
+            }
+            return node;
+        }
+        int child = node;
+        node = parent(node);
+        while (node != NIL && right(node) == child) {
+            child = node;
+            node = parent(node);
+        }
+        return node;
+    }
+
+    static int writeVarLong(byte[] out, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private void unlink(int node) {
+        int retraceFrom;
+        if (left(node) == NIL || right(node) == NIL) {
+            int child = left(node) == NIL ? right(node) : left(node);
+            retraceFrom = parent(node);
+            replaceChild(parent(node), node, child);
+        } else {
+            // Splice the in-order successor into the position of the removed node, rather than
+            // copying its key, so that node indices of live keys never change.
+            int successor = right(node);
+            while (left(successor) != NIL) {
+                successor = left(successor);
+            }
+            if (successor == right(node)) {
+                retraceFrom = successor;
+            } else {
+                retraceFrom = parent(successor);
+                setLeft(retraceFrom, right(successor));
+                if (right(successor) != NIL) {
+                    setParent(right(successor), retraceFrom);
+                }
+                setRight(successor, right(node));
+                setParent(right(node), successor);
+            }
+            setLeft(successor, left(node));
+            setParent(left(node), successor);
+            replaceChild(parent(node), node, successor);
+        }
+        release(node);
+        retrace(retraceFrom);
+    }
+
+    /**
+     * Refreshes sizes and heights from the given node up to the root, rotating where unbalanced.
+     */
+    private void retrace(int node) {
+        while (node != NIL) {
+            update(node);
+            node = parent(rebalance(node));
+        }
+    }
+
+    private int rebalance(int node) {
+        int balance = height(left(node)) - height(right(node));
+        if (balance > 1) {
+            int child = left(node);
+            if (height(left(child)) < height(right(child))) {
+                rotateLeft(child);
+            }
+            return rotateRight(node);
+        } else if (balance < -1) {
+            int child = right(node);
+            if (height(right(child)) < height(left(child))) {
+                rotateRight(child);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private int rotateLeft(int node) {
+        int pivot = right(node);
+        setRight(node, left(pivot));
+        if (left(pivot) != NIL) {
+            setParent(left(pivot), node);
+        }
+        replaceChild(parent(node), node, pivot);
+        setLeft(pivot, node);
+        setParent(node, pivot);
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private int rotateRight(int node) {
+        int pivot = left(node);
+        setLeft(node, right(pivot));
+        if (right(pivot) != NIL) {
+            setParent(right(pivot), node);
+        }
+        replaceChild(parent(node), node, pivot);
+        setRight(pivot, node);
+        setParent(node, pivot);
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private void replaceChild(int parentNode, int oldChild, int newChild) {
+        if (parentNode == NIL) {
+            root = newChild;
+        } else if (left(parentNode) == oldChild) {
+            setLeft(parentNode, newChild);
+        } else {
+            setRight(parentNode, newChild);
+        }
+        if (newChild != NIL) {
+            setParent(newChild, parentNode);
+        }
+    }
+
+    private void update(int node) {
+        setSubtreeSize(node, subtreeSize(left(node)) + subtreeSize(right(node)) + count(node));
+        setHeight(node, Math.max(height(left(node)), height(right(node))) + 1);
+        augment(node);
+    }
+
+    /**
+     * Refreshes whatever a subclass keeps per subtree, once the children of the given node are up to date.
+     */
+    void augment(int node) {
+    }
+
+    private int newNode(long key, int count, int parentNode) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = left(node);
+        } else {
+            if (nextUnused >= capacity()) {
+                grow();
+            }
+            node = nextUnused++;
+        }
+        setKey(node, key);
+        setCount(node, count);
+        setSubtreeSize(node, count);
+        setHeight(node, 1);
+        setLeft(node, NIL);
+        setRight(node, NIL);
+        setParent(node, parentNode);
+        return node;
+    }
+
+    private void release(int node) {
+        setLeft(node, freeList);
+        freeList = node;
+    }
+
+    abstract long key(int node);
+
+    abstract void setKey(int node, long key);
+
+    abstract int count(int node);
+
+    abstract void setCount(int node, int count);
+
+    abstract int subtreeSize(int node);
+
+    abstract void setSubtreeSize(int node, int size);
+
+    abstract int left(int node);
+
+    abstract void setLeft(int node, int left);
+
+    abstract int right(int node);
+
+    abstract void setRight(int node, int right);
+
+    abstract int parent(int node);
+
+    abstract void setParent(int node, int parent);
+
+    abstract int height(int node);
+
+    abstract void setHeight(int node, int height);
+
+    /**
+     * Returns the number of nodes, including the sentinel, that fit in the storage.
+     */
+    abstract int capacity();
+
+    /**
+     * Makes room for more nodes, keeping the existing ones.
+     */
+    abstract void grow();
+
+    /**
+     * Discards all nodes and makes room for at least the given number of nodes, including a zeroed
+     * sentinel.
+     */
+    abstract void reallocate(int capacity);
+
+    /**
+     * Returns the number of bytes taken by the storage of the nodes, on or off the heap.
+     */
+    abstract long estimatedBytes();
+
+    /**
+     * Empties the tree and gives up its storage beyond that of an empty tree. The tree remains usable.
+     */
+    void free() {
+        clear();
+        reallocate(1);
+    }
+
+    /**
+     * Parallel primitive arrays indexed by node.
+     */
+    static class OnHeap extends OrderStatisticTree {
+        private static final int NODE_BYTES = Long.BYTES + 5 * Integer.BYTES + 1;
+
+        private long[] keys;
+        private int[] counts;
+        private int[] sizes;
+        private int[] left;
+        private int[] right;
+        private int[] parent;
+        private byte[] heights;
+
+        OnHeap() {
+            reallocate(INITIAL_CAPACITY);
+        }
+
+        @Override
+        long key(int node) {
+            return keys[node];
+        }
+
+        @Override
+        void setKey(int node, long key) {
+            keys[node] = key;
+        }
+
+        @Override
+        int count(int node) {
+            return counts[node];
+        }
+
+        @Override
+        void setCount(int node, int count) {
+            counts[node] = count;
+        }
+
+        @Override
+        int subtreeSize(int node) {
+            return sizes[node];
+        }
+
+        @Override
+        void setSubtreeSize(int node, int size) {
+            sizes[node] = size;
+        }
+
+        @Override
+        int left(int node) {
+            return left[node];
+        }
+
+        @Override
+        void setLeft(int node, int left) {
+            this.left[node] = left;
+        }
+
+        @Override
+        int right(int node) {
+            return right[node];
+        }
+
+        @Override
+        void setRight(int node, int right) {
+            this.right[node] = right;
+        }
+
+        @Override
+        int parent(int node) {
+            return parent[node];
+        }
+
+        @Override
+        void setParent(int node, int parent) {
+            this.parent[node] = parent;
+        }
+
+        @Override
+        int height(int node) {
+            return heights[node];
+        }
+
+        @Override
+        void setHeight(int node, int height) {
+            heights[node] = (byte) height;
+        }
+
+        @Override
+        int capacity() {
+            return keys.length;
+        }
+
+        @Override
+        void grow() {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+        }
+
+        @Override
+        void reallocate(int capacity) {
+            capacity = Math.max(INITIAL_CAPACITY, capacity);
+            keys = new long[capacity];
+            counts = new int[capacity];
+            sizes = new int[capacity];
+            left = new int[capacity];
+            right = new int[capacity];
+            parent = new int[capacity];
+            heights = new byte[capacity];
+        }
+
+        @Override
+        long estimatedBytes() {
+            return (long) keys.length * NODE_BYTES;
+        }
+    }
+
+    /**
+     * Fixed size records in direct buffers, so that the nodes of a tree add nothing but a reference per
+     * slab of {@link #NODES_PER_SLAB} nodes to the Java heap, and are never copied by the garbage
+     * collector.
+     * <p>
+     * Slabs are added one at a time as the tree grows, rather than reallocated, and are handed back to a
+     * pool shared by all trees by {@link #free()}, since direct buffers are otherwise only released
+     * when the garbage collector gets around to them.
+     */
+    static class OffHeap extends OrderStatisticTree {
+        static final int NODES_PER_SLAB = 2048;
+        static final int NODE_BYTES = 32;
+        static final int SLAB_BYTES = NODES_PER_SLAB * NODE_BYTES;
+        private static final int SLAB_SHIFT = 11;
+        private static final int NODE_MASK = NODES_PER_SLAB - 1;
+        private static final int KEY = 0;
+        private static final int COUNT = 8;
+        private static final int SIZE = 12;
+        private static final int LEFT = 16;
+        private static final int RIGHT = 20;
+        private static final int PARENT = 24;
+        private static final int HEIGHT = 28;
+        private static final int MAX_POOLED_SLABS = 256;
+        private static final ArrayBlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(MAX_POOLED_SLABS);
+
+        private ByteBuffer[] slabs = new ByteBuffer[0];
+
+        private ByteBuffer slab(int node) {
+            return slabs[node >>> SLAB_SHIFT];
+        }
+
+        private static int offset(int node, int field) {
+            return ((node & NODE_MASK) * NODE_BYTES) + field;
+        }
+
+        @Override
+        long key(int node) {
+            return slab(node).getLong(offset(node, KEY));
+        }
+
+        @Override
+        void setKey(int node, long key) {
+            slab(node).putLong(offset(node, KEY), key);
+        }
+
+        @Override
+        int count(int node) {
+            return slab(node).getInt(offset(node, COUNT));
+        }
+
+        @Override
+        void setCount(int node, int count) {
+            slab(node).putInt(offset(node, COUNT), count);
+        }
+
+        @Override
+        int subtreeSize(int node) {
+            return slab(node).getInt(offset(node, SIZE));
+        }
+
+        @Override
+        void setSubtreeSize(int node, int size) {
+            slab(node).putInt(offset(node, SIZE), size);
+        }
+
+        @Override
+        int left(int node) {
+            return slab(node).getInt(offset(node, LEFT));
+        }
+
+        @Override
+        void setLeft(int node, int left) {
+            slab(node).putInt(offset(node, LEFT), left);
+        }
+
+        @Override
+        int right(int node) {
+            return slab(node).getInt(offset(node, RIGHT));
+        }
+
+        @Override
+        void setRight(int node, int right) {
+            slab(node).putInt(offset(node, RIGHT), right);
+        }
+
+        @Override
+        int parent(int node) {
+            return slab(node).getInt(offset(node, PARENT));
+        }
+
+        @Override
+        void setParent(int node, int parent) {
+            slab(node).putInt(offset(node, PARENT), parent);
+        }
+
+        @Override
+        int height(int node) {
+            return slab(node).get(offset(node, HEIGHT));
+        }
+
+        @Override
+        void setHeight(int node, int height) {
+            slab(node).put(offset(node, HEIGHT), (byte) height);
+        }
+
+        @Override
+        int capacity() {
+            return slabs.length * NODES_PER_SLAB;
+        }
+
+        @Override
+        void grow() {
+            ByteBuffer slab = newSlab();
+            slabs = Arrays.copyOf(slabs, slabs.length + 1);
+            slabs[slabs.length - 1] = slab;
+            if (slabs.length == 1) {
+                // Pooled slabs hold stale nodes, but the sentinel has to read as an empty subtree.
+                for (int i = 0; i < NODE_BYTES; i++) {
+                    slab.put(i, (byte) 0);
+                }
+            }
+        }
+
+        @Override
+        void reallocate(int capacity) {
+            free();
+            // Slabs are only needed once there are nodes besides the sentinel.
+            while (capacity > 1 && capacity() < capacity) {
+                grow();
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            return (long) slabs.length * NODES_PER_SLAB * NODE_BYTES;
+        }
+
+        /**
+         * Empties the tree and hands its slabs back to the pool, to be reused by this or another tree.
+         */
+        @Override
+        void free() {
+            clear();
+            releaseSlabs(slabs);
+            slabs = new ByteBuffer[0];
+        }
+
+        ByteBuffer newSlab() {
+            ByteBuffer slab = POOL.poll();
+            return slab != null ? slab : ByteBuffer.allocateDirect(SLAB_BYTES).order(ByteOrder.nativeOrder());
+        }
+
+        void releaseSlabs(ByteBuffer[] released) {
+            for (ByteBuffer slab : released) {
+                if (!POOL.offer(slab)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Off-heap records in a temporary file mapped into memory, for trees that have outgrown their memory
+     * budget. The operating system pages nodes in and out as they are visited, so the tree keeps its
+     * O(log n) operations while only its recently visited paths take up memory, and its top levels, which
+     * every operation visits, stay resident.
+     * <p>
+     * The file is deleted as soon as it is created, so that it never outlives the process. Its space is
+     * reclaimed once {@link #free()} has closed it and the garbage collector has unmapped its slabs.
+     */
+    static final class Mapped extends OffHeap {
+        private static final int SLABS_PER_MAPPING = 256;
+
+        private final File directory;
+        private FileChannel channel;
+        private ByteBuffer mapping;
+        private int slabsMapped = SLABS_PER_MAPPING;
+        private long fileBytes;
+
+        Mapped(File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        long estimatedBytes() {
+            return fileBytes;
+        }
+
+        /**
+         * Maps the file in regions of {@link #SLABS_PER_MAPPING} slabs, which are then handed out one at
+         * a time, to keep the number of mappings low.
+         */
+        @Override
+        ByteBuffer newSlab() {
+            try {
+                if (channel == null) {
+                    File file = File.createTempFile("siddhi-stats-", ".tree", directory);
+                    channel = new RandomAccessFile(file, "rw").getChannel();
+                    if (!file.delete()) {
+                        file.deleteOnExit();
+                    }
+                }
+                if (slabsMapped == SLABS_PER_MAPPING) {
+                    mapping = channel.map(FileChannel.MapMode.READ_WRITE, fileBytes,
+                            (long) SLABS_PER_MAPPING * SLAB_BYTES);
+                    fileBytes += (long) SLABS_PER_MAPPING * SLAB_BYTES;
+                    slabsMapped = 0;
+                }
+            } catch (IOException e) {
+                throw new SiddhiAppRuntimeException("Could not spill order statistics to a file in " +
+                        directory, e);
+            }
+            // Through Buffer, as ByteBuffer only overrides limit(int) and position(int) from Java 9 on,
+            // so that classes compiled on a newer JDK for Java 8 still link on a Java 8 runtime.
+            Buffer window = mapping;
+            window.limit((slabsMapped + 1) * SLAB_BYTES);
+            window.position(slabsMapped * SLAB_BYTES);
+            slabsMapped++;
+            return mapping.slice().order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        void releaseSlabs(ByteBuffer[] released) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new SiddhiAppRuntimeException("Could not close the order statistics file in " +
+                            directory, e);
+                }
+            }
+            channel = null;
+            mapping = null;
+            slabsMapped = SLABS_PER_MAPPING;
+            fileBytes = 0;
+        }
+    }
+
+    /**
+     * Parallel primitive arrays, augmented with the total weight of the occurrences of each key and the
+     * sum of those totals over each subtree, so that the key at a given cumulative weight is found in
+     * O(log n) time as well.
+     * <p>
+     * The weights of the occurrences of a key are only kept as their sum, so an occurrence has to be
+     * removed with the weight it was added with. Each sum carries the rounding error of its updates along,
+     * so that it stays the correctly rounded sum of the weights present however many have come and gone,
+     * rather than drift as weights are added and then subtracted. The sums over subtrees are recomputed
+     * from those of their nodes, so they do not drift either, but the order in which they add the weights
+     * up differs from one subtree to another, so cumulative weights may still differ in their last bits
+     * from the same weights added up in order.
+     */
+    static final class Weighted extends OnHeap {
+        private double[] weights;
+        private double[] weightErrors;
+        private double[] weightSums;
+
+        /**
+         * Adds one occurrence of the given key with the given weight.
+         */
+        void add(long key, double weight) {
+            int node = add(key);
+            addWeight(node, weight);
+            for (; node != NIL; node = parent(node)) {
+                augment(node);
+            }
+        }
+
+        /**
+         * Removes one occurrence of the given key, added with the given weight.
+         *
+         * @return false if the key is not present
+         */
+        boolean remove(long key, double weight) {
+            int node = find(key);
+            if (node == NIL) {
+                return false;
+            }
+            if (count(node) > 1) {
+                addWeight(node, -weight);
+            } else {
+                // Zero the weight of a node that is going away, so that it is clean when recycled.
+                weights[node] = 0;
+                weightErrors[node] = 0;
+            }
+            return remove(node, key);
+        }
+
+        /**
+         * Adds to the weight of the node by a two-sum, keeping the error of the rounded sum to add to the
+         * next update of the node.
+         */
+        private void addWeight(int node, double weight) {
+            double sum = weights[node] + weight;
+            double error = Math.abs(weights[node]) >= Math.abs(weight) ? weights[node] - sum + weight :
+                    weight - sum + weights[node];
+            error += weightErrors[node];
+            weights[node] = sum + error;
+            weightErrors[node] = error - (weights[node] - sum);
+        }
+
+        double totalWeight() {
+            return weightSums[root()];
+        }
+
+        /**
+         * Returns the smallest key whose occurrences, together with those of all smaller keys, weigh at
+         * least the given weight, or more than it if {@code strictly} is set. The largest key is returned
+         * if the total weight falls short of it.
+         *
+         * @throws IndexOutOfBoundsException if the tree is empty
+         */
+        long selectByWeight(double weight, boolean strictly) {
+            int node = root();
+            if (node == NIL) {
+                throw new IndexOutOfBoundsException("Weight " + weight + " is out of range for an empty tree");
+            }
+            while (true) {
+                double leftWeight = weightSums[left(node)];
+                if (left(node) != NIL && (strictly ? weight < leftWeight : weight <= leftWeight)) {
+                    node = left(node);
+                    continue;
+                }
+                weight -= leftWeight;
+                if ((strictly ? weight < weights[node] : weight <= weights[node]) || right(node) == NIL) {
+                    return key(node);
+                }
+                weight -= weights[node];
+                node = right(node);
+            }
+        }
+
+        @Override
+        void augment(int node) {
+            weightSums[node] = weightSums[left(node)] + weightSums[right(node)] + weights[node];
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            Arrays.fill(weights, 0);
+            Arrays.fill(weightErrors, 0);
+        }
+
+        /**
+         * Encodes the weight of each distinct key, in ascending order of the keys, followed by the
+         * encoding of {@link OrderStatisticTree#toBytes()}.
+         */
+        @Override
+        byte[] toBytes() {
+            byte[] tree = super.toBytes();
+            int distinct = distinctKeys();
+            ByteBuffer out = ByteBuffer.allocate(MAX_VAR_LONG_BYTES + distinct * Double.BYTES + tree.length);
+            byte[] count = new byte[MAX_VAR_LONG_BYTES];
+            out.put(count, 0, writeVarLong(count, 0, distinct));
+            for (int node = first(); node != NIL; node = successor(node)) {
+                out.putDouble(weights[node]);
+            }
+            out.put(tree);
+            return Arrays.copyOf(out.array(), out.position());
+        }
+
+        @Override
+        void restore(byte[] bytes) {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            double[] restored = new double[(int) readVarLong(in)];
+            for (int i = 0; i < restored.length; i++) {
+                restored[i] = in.getDouble();
+            }
+            super.restore(Arrays.copyOfRange(bytes, in.position(), bytes.length));
+            // The restored tree numbers its nodes in ascending order of their keys.
+            System.arraycopy(restored, 0, weights, 1, restored.length);
+            Arrays.fill(weightErrors, 0);
+            sumWeights(root());
+        }
+
+        private double sumWeights(int node) {
+            if (node == NIL) {
+                return 0;
+            }
+            weightSums[node] = sumWeights(left(node)) + sumWeights(right(node)) + weights[node];
+            return weightSums[node];
+        }
+
+        @Override
+        void grow() {
+            super.grow();
+            weights = Arrays.copyOf(weights, capacity());
+            weightErrors = Arrays.copyOf(weightErrors, capacity());
+            weightSums = Arrays.copyOf(weightSums, capacity());
+        }
+
+        @Override
+        void reallocate(int capacity) {
+            // Also called by the constructor of the superclass, before the fields of this class are set.
+            super.reallocate(capacity);
+            weights = new double[capacity()];
+            weightErrors = new double[capacity()];
+            weightSums = new double[capacity()];
+        }
+
+        @Override
+        long estimatedBytes() {
+            return super.estimatedBytes() + (long) capacity() * 3 * Double.BYTES;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.SnapshotStateList;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
+import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
+import static io.siddhi.query.api.definition.Attribute.Type.INT;
+import static io.siddhi.query.api.definition.Attribute.Type.LONG;
+
+/**
+ * This extension returns the exact percentile of aggregated events.
+ */
+
+@Extension(
+        name = "percentile",
+        namespace = "stats",
+        description = "This extension returns the given percentile of aggregated events." +
+                "\n " +
+                "It keeps the values in the same order-statistic tree as 'stats:median()', so any " +
+                "percentile is found with an O(log n) rank lookup and p99 costs no more than the median. " +
+                "The result is exact, but every value of the window is retained; for very large windows " +
+                "consider 'stats:approximatePercentile()'. Events with a null value are ignored.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its percentile.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+                @Parameter(name = "percentile",
+                        description = "The percentile to be returned, a constant between 0 and 100.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+                @Parameter(name = "interpolation",
+                        description = "How the percentile is derived from the ordered values. 'linear' " +
+                                "interpolates between the two closest ranks, which makes the 50th percentile " +
+                                "equal to the median. 'nearest' returns the value at the smallest rank that " +
+                                "covers the percentile, which is always one of the aggregated values.",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "linear")
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the percentile as a 'double' value for all data " +
+                        "types, i.e., for 'int', 'long', 'double' and 'float'.",
+                type = {DataType.DOUBLE}),
+        examples = {
+                @Example(
+                        syntax = "from InputStream#window.time(5 min)" +
+                                "\nselect stats:percentile(latency, 99) as p99Latency" +
+                                "\ninsert into OutputStream;",
+                        description = "This returns the 99th percentile of the latency values of the last five " +
+                                "minutes, interpolated linearly, with the arrival and expiry of each event."
+                ),
+                @Example(
+                        syntax = "from InputStream#window.length(100)" +
+                                "\nselect stats:percentile(latency, 90, 'nearest') as p90Latency" +
+                                "\ninsert into OutputStream;",
+                        description = "This returns the 90th percentile of the latency values of the last " +
+                                "hundred events by the nearest-rank method."
+                )
+        }
+)
+public class PercentileAttributeAggregator
+        extends AttributeAggregatorExecutor<PercentileAttributeAggregator.ExtensionState> {
+    private static final String LINEAR = "linear";
+    private static final String NEAREST = "nearest";
+
+    private Supplier<OrderStatisticStore> storeSupplier;
+    private double percentile;
+    private boolean interpolate = true;
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode,
+                                                boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 2 && attributeExpressionExecutors.length != 3) {
+            throw new OperationNotSupportedException("Percentile aggregator has to have 2 or 3 " +
+                    "parameters, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+
+        Attribute.Type type = attributeExpressionExecutors[0].getReturnType();
+        if (type != DOUBLE && type != INT && type != FLOAT && type != LONG) {
+            throw new OperationNotSupportedException("Percentile not supported for " + type);
+        }
+        this.storeSupplier = OrderStatisticStore.supplierOf(type);
+
+        Object percentileValue = constantValue(attributeExpressionExecutors[1], "percentile");
+        if (!(percentileValue instanceof Number)) {
+            throw new SiddhiAppValidationException("The percentile parameter of the percentile aggregator " +
+                    "should be numeric, but found " + percentileValue);
+        }
+        this.percentile = ((Number) percentileValue).doubleValue();
+        if (percentile < 0 || percentile > 100) {
+            throw new SiddhiAppValidationException("Percentile of the percentile aggregator should be " +
+                    "between 0 and 100, but found " + percentile);
+        }
+
+        if (attributeExpressionExecutors.length == 3) {
+            Object interpolation = constantValue(attributeExpressionExecutors[2], "interpolation");
+            if (LINEAR.equals(interpolation)) {
+                this.interpolate = true;
+            } else if (NEAREST.equals(interpolation)) {
+                this.interpolate = false;
+            } else {
+                throw new SiddhiAppValidationException("Interpolation of the percentile aggregator should be " +
+                        "'" + LINEAR + "' or '" + NEAREST + "', but found " + interpolation);
+            }
+        }
+
+        return ExtensionState::new;
+    }
+
+    private static Object constantValue(ExpressionExecutor executor, String name) {
+        if (!(executor instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppValidationException("The " + name + " parameter of the percentile aggregator " +
+                    "should be a constant");
+        }
+        return ((ConstantExpressionExecutor) executor).getValue();
+    }
+
+    public Attribute.Type getReturnType() {
+        return DOUBLE;
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        return new IllegalStateException("Percentile cannot process a single argument, but found " + data);
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        if (data[0] != null) {
+            state.values.add(data[0]);
+        }
+        return state.values.percentile(percentile, interpolate);
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        return new IllegalStateException("Percentile cannot process a single argument, but found " + data);
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        if (data[0] != null) {
+            state.values.remove(data[0]);
+        }
+        return state.values.percentile(percentile, interpolate);
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        state.values.clear();
+        return 0.0;
+    }
+
+    public void start() {
+    }
+
+    public void stop() {
+    }
+
+    class ExtensionState extends State {
+        private final OrderStatisticStore values = storeSupplier.get();
+
+        @Override
+        public boolean canDestroy() {
+            return values.isEmpty();
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            Map<String, Object> state = new HashMap<>();
+            state.put("Values", this.values.snapshot());
+            return state;
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            this.values.restore((SnapshotStateList) state.get("Values"));
+        }
+    }
+}
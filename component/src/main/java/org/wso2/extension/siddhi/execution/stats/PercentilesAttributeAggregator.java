@@ -0,0 +1,243 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.SnapshotStateList;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
+import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
+import static io.siddhi.query.api.definition.Attribute.Type.INT;
+import static io.siddhi.query.api.definition.Attribute.Type.LONG;
+import static io.siddhi.query.api.definition.Attribute.Type.OBJECT;
+
+/**
+ * This extension returns several exact percentiles of aggregated events at once.
+ */
+
+@Extension(
+        name = "percentiles",
+        namespace = "stats",
+        description = "This extension returns several percentiles of aggregated events at once." +
+                "\n " +
+                "The values are kept in a single order-statistic tree, and all the requested percentiles " +
+                "are selected in one descent of it. This is cheaper in both memory and CPU than a separate " +
+                "'stats:percentile()' for each percentile, which would each keep a copy of the window. " +
+                "Events with a null value are ignored.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its percentiles.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+                @Parameter(name = "percentile",
+                        description = "One or more distinct percentiles to be returned, each a constant " +
+                                "between 0 and 100, given as consecutive parameters.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+                @Parameter(name = "interpolation",
+                        description = "How the percentiles are derived from the ordered values, 'linear' or " +
+                                "'nearest', as for 'stats:percentile()'. If given, it has to be the last " +
+                                "parameter.",
+                        type = {DataType.STRING},
+                        optional = true,
+                        defaultValue = "linear")
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns a map from each percentile, prefixed with 'p' as in 'p50' or " +
+                        "'p99.9', to its value as a 'double', in the order the percentiles were given.",
+                type = {DataType.OBJECT}),
+        examples = @Example(
+                syntax = "from InputStream#window.time(5 min)" +
+                        "\nselect stats:percentiles(latency, 50, 90, 99, 99.9) as latencyPercentiles" +
+                        "\ninsert into OutputStream;",
+                description = "This returns the 50th, 90th, 99th and 99.9th percentiles of the latency " +
+                        "values of the last five minutes, with the arrival and expiry of each event."
+        )
+)
+public class PercentilesAttributeAggregator
+        extends AttributeAggregatorExecutor<PercentilesAttributeAggregator.ExtensionState> {
+    private static final String LINEAR = "linear";
+    private static final String NEAREST = "nearest";
+
+    private Supplier<OrderStatisticStore> storeSupplier;
+    private double[] percents;
+    private String[] names;
+    private boolean interpolate = true;
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode,
+                                                boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length < 2) {
+            throw new OperationNotSupportedException("Percentiles aggregator has to have at least 2 " +
+                    "parameters, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+
+        Attribute.Type type = attributeExpressionExecutors[0].getReturnType();
+        if (type != DOUBLE && type != INT && type != FLOAT && type != LONG) {
+            throw new OperationNotSupportedException("Percentiles not supported for " + type);
+        }
+        this.storeSupplier = OrderStatisticStore.supplierOf(type);
+
+        int percentileCount = attributeExpressionExecutors.length - 1;
+        Object last = constantValue(attributeExpressionExecutors[percentileCount], "interpolation");
+        if (last instanceof String) {
+            if (LINEAR.equals(last)) {
+                this.interpolate = true;
+            } else if (NEAREST.equals(last)) {
+                this.interpolate = false;
+            } else {
+                throw new SiddhiAppValidationException("Interpolation of the percentiles aggregator should " +
+                        "be '" + LINEAR + "' or '" + NEAREST + "', but found " + last);
+            }
+            percentileCount--;
+        }
+        if (percentileCount == 0) {
+            throw new OperationNotSupportedException("Percentiles aggregator has to have at least one " +
+                    "percentile");
+        }
+
+        this.percents = new double[percentileCount];
+        this.names = new String[percentileCount];
+        for (int i = 0; i < percentileCount; i++) {
+            Object value = constantValue(attributeExpressionExecutors[i + 1], "percentile");
+            if (!(value instanceof Number)) {
+                throw new SiddhiAppValidationException("The percentile parameters of the percentiles " +
+                        "aggregator should be numeric, but found " + value);
+            }
+            percents[i] = ((Number) value).doubleValue();
+            if (percents[i] < 0 || percents[i] > 100) {
+                throw new SiddhiAppValidationException("Percentiles of the percentiles aggregator should " +
+                        "be between 0 and 100, but found " + percents[i]);
+            }
+            names[i] = "p" + BigDecimal.valueOf(percents[i]).stripTrailingZeros().toPlainString();
+            for (int j = 0; j < i; j++) {
+                if (names[j].equals(names[i])) {
+                    throw new SiddhiAppValidationException("Percentiles of the percentiles aggregator should " +
+                            "be distinct, but found " + percents[i] + " more than once");
+                }
+            }
+        }
+
+        return ExtensionState::new;
+    }
+
+    private static Object constantValue(ExpressionExecutor executor, String name) {
+        if (!(executor instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppValidationException("The " + name + " parameter of the percentiles aggregator " +
+                    "should be a constant");
+        }
+        return ((ConstantExpressionExecutor) executor).getValue();
+    }
+
+    public Attribute.Type getReturnType() {
+        return OBJECT;
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        return new IllegalStateException("Percentiles cannot process a single argument, but found " + data);
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        if (data[0] != null) {
+            state.values.add(data[0]);
+        }
+        return state.percentiles();
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        return new IllegalStateException("Percentiles cannot process a single argument, but found " + data);
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        if (data[0] != null) {
+            state.values.remove(data[0]);
+        }
+        return state.percentiles();
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        state.values.clear();
+        return state.percentiles();
+    }
+
+    public void start() {
+    }
+
+    public void stop() {
+    }
+
+    class ExtensionState extends State {
+        private final OrderStatisticStore values = storeSupplier.get();
+        private final double[] results = new double[percents.length];
+
+        /**
+         * Returns a new map, since the previous one may still be held by events emitted earlier.
+         */
+        private Map<String, Object> percentiles() {
+            values.percentiles(percents, interpolate, results);
+            Map<String, Object> percentiles = new LinkedHashMap<>(2 * names.length);
+            for (int i = 0; i < names.length; i++) {
+                percentiles.put(names[i], results[i]);
+            }
+            return percentiles;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return values.isEmpty();
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            Map<String, Object> state = new HashMap<>();
+            state.put("Values", this.values.snapshot());
+            return state;
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            this.values.restore((SnapshotStateList) state.get("Values"));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+
+/**
+ * This extension returns the population standard deviation of aggregated events.
+ */
+
+@Extension(
+        name = "stddev",
+        namespace = "stats",
+        description = "This extension returns the population standard deviation of aggregated events." +
+                "\n " +
+                "It is the square root of the population variance, as returned by 'stats:variance()', " +
+                "and is likewise maintained in O(1) per event.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its " +
+                                "population standard deviation.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the population standard deviation as a 'double' value for all data " +
+                        "types, i.e., for 'int', 'long', 'double' and 'float'.",
+                type = {DataType.DOUBLE}),
+        examples = @Example(
+                syntax = "from InputStream#window.length(5)" +
+                        "\nselect stats:stddev(price) as priceStdDev" +
+                        "\ninsert into OutputStream;",
+                description = "This returns the population standard deviation of the price values of the last five " +
+                        "events as a 'double' value, with the arrival and expiry of each event."
+        )
+)
+public class StandardDeviationAttributeAggregator extends MomentAttributeAggregator {
+
+    @Override
+    String statisticName() {
+        return "Standard deviation";
+    }
+
+    @Override
+    double statistic(WelfordMoments moments) {
+        return moments.standardDeviation();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of emptied stores, shared by the group states of a query, so that queries grouping by
+ * short lived keys reuse the arrays of stores instead of allocating new ones for every group.
+ * <p>
+ * The pool only grows as stores are released, up to its capacity, beyond which released stores are
+ * left to the garbage collector. Stores give up memory beyond that of a small store before they are
+ * pooled, see {@link OrderStatisticStore#recycle()}, so the pool never holds on to the memory of a
+ * group that once grew large.
+ * <p>
+ * Nor does it hold on to stores it no longer needs once the churn of groups calms down. The pool tracks
+ * the fewest stores it held over each {@link #TRIM_INTERVAL} acquisitions, that many stores having sat
+ * unused throughout, and gives them up at the end of the interval. Stores are handed out last in, first
+ * out, so those given up are the ones released the longest ago.
+ */
+final class StorePool {
+    static final int TRIM_INTERVAL = 1024;
+
+    private final Supplier<OrderStatisticStore> supplier;
+    private final int capacity;
+    private final ArrayDeque<OrderStatisticStore> stores;
+    private int acquisitions;
+    private int fewestPooled;
+
+    /**
+     * @param supplier creates the stores, configured as the query requires
+     * @param capacity the maximum number of stores pooled, or 0 to not pool them
+     */
+    StorePool(Supplier<OrderStatisticStore> supplier, int capacity) {
+        this.supplier = supplier;
+        this.capacity = capacity;
+        this.stores = capacity > 0 ? new ArrayDeque<>(Math.min(capacity, TRIM_INTERVAL)) : null;
+    }
+
+    OrderStatisticStore acquire() {
+        OrderStatisticStore store = null;
+        if (stores != null) {
+            synchronized (stores) {
+                store = stores.pollFirst();
+                fewestPooled = Math.min(fewestPooled, stores.size());
+                if (++acquisitions == TRIM_INTERVAL) {
+                    for (int i = 0; i < fewestPooled; i++) {
+                        stores.pollLast();
+                    }
+                    acquisitions = 0;
+                    fewestPooled = stores.size();
+                }
+            }
+        }
+        return store != null ? store : supplier.get();
+    }
+
+    /**
+     * Takes back a store that is no longer used by its group.
+     */
+    void release(OrderStatisticStore store) {
+        store.recycle();
+        if (stores != null) {
+            synchronized (stores) {
+                if (stores.size() < capacity) {
+                    stores.offerFirst(store);
+                }
+            }
+        }
+    }
+}
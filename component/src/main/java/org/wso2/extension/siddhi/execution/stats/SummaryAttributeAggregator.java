@@ -0,0 +1,197 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.SnapshotStateList;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
+import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
+import static io.siddhi.query.api.definition.Attribute.Type.INT;
+import static io.siddhi.query.api.definition.Attribute.Type.LONG;
+
+/**
+ * This extension returns the summary statistics of aggregated events.
+ */
+
+@Extension(
+        name = "summary",
+        namespace = "stats",
+        description = "This extension returns the count, minimum, maximum, mean, population standard " +
+                "deviation and median of aggregated events, as a map with the keys 'count', 'min', 'max', " +
+                "'mean', 'stddev' and 'median'." +
+                "\n " +
+                "All six statistics are derived from one order-statistic tree of the values and one set of " +
+                "running moments, which costs far less than calling the individual aggregators on the same " +
+                "attribute. Individual statistics can be read from the map with 'stats:summaryValue()'.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its summary.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the summary as a 'java.util.Map' object, holding the count as a 'long' " +
+                        "and the other statistics as 'double' values.",
+                type = {DataType.OBJECT}),
+        examples = @Example(
+                syntax = "from InputStream#window.time(1 min)" +
+                        "\nselect stats:summary(latency) as summary" +
+                        "\ninsert into SummaryStream;" +
+                        "\n" +
+                        "\nfrom SummaryStream" +
+                        "\nselect stats:summaryValue(summary, 'median') as medianLatency, " +
+                        "stats:summaryValue(summary, 'max') as maxLatency" +
+                        "\ninsert into OutputStream;",
+                description = "This summarises the latency values of the last minute with the arrival and " +
+                        "expiry of each event, and then reads the median and maximum from the summary."
+        )
+)
+public class SummaryAttributeAggregator
+        extends AttributeAggregatorExecutor<SummaryAttributeAggregator.ExtensionState> {
+    static final String COUNT = "count";
+    static final String MIN = "min";
+    static final String MAX = "max";
+    static final String MEAN = "mean";
+    static final String STANDARD_DEVIATION = "stddev";
+    static final String MEDIAN = "median";
+
+    private Supplier<OrderStatisticStore> storeSupplier;
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode,
+                                                boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 1) {
+            throw new OperationNotSupportedException("Summary aggregator has to have exactly 1 " +
+                    "parameter, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+        Attribute.Type type = attributeExpressionExecutors[0].getReturnType();
+        if (type != DOUBLE && type != INT && type != FLOAT && type != LONG) {
+            throw new OperationNotSupportedException("Summary not supported for " + type);
+        }
+        this.storeSupplier = OrderStatisticStore.supplierOf(type);
+        return ExtensionState::new;
+    }
+
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.OBJECT;
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        if (data != null) {
+            state.values.add(data);
+            state.moments.add(((Number) data).doubleValue());
+        }
+        return summarise(state);
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        if (data != null && state.values.remove(data)) {
+            state.moments.remove(((Number) data).doubleValue());
+        }
+        return summarise(state);
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        return new IllegalStateException("Summary cannot process data array, but found " +
+                Arrays.deepToString(data));
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        return new IllegalStateException("Summary cannot process data array, but found " +
+                Arrays.deepToString(data));
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        state.values.clear();
+        state.moments.clear();
+        return summarise(state);
+    }
+
+    /**
+     * Returns a new map on each call, as earlier summaries may still be held by emitted events.
+     */
+    private static Map<String, Object> summarise(ExtensionState state) {
+        OrderStatisticStore values = state.values;
+        boolean empty = values.isEmpty();
+        Map<String, Object> summary = new LinkedHashMap<>(8);
+        summary.put(COUNT, (long) values.size());
+        summary.put(MIN, empty ? 0.0 : values.select(0));
+        summary.put(MAX, empty ? 0.0 : values.select(values.size() - 1));
+        summary.put(MEAN, state.moments.mean());
+        summary.put(STANDARD_DEVIATION, state.moments.standardDeviation());
+        summary.put(MEDIAN, values.median());
+        return summary;
+    }
+
+    public void start() {
+    }
+
+    public void stop() {
+    }
+
+    class ExtensionState extends State {
+        private final OrderStatisticStore values = storeSupplier.get();
+        private final WelfordMoments moments = new WelfordMoments();
+
+        @Override
+        public boolean canDestroy() {
+            return values.isEmpty();
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            Map<String, Object> state = new HashMap<>();
+            state.put("Values", this.values.snapshot());
+            state.put("Moments", this.moments.snapshot());
+            return state;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void restore(Map<String, Object> state) {
+            this.values.restore((SnapshotStateList) state.get("Values"));
+            this.moments.restore((Map<String, Object>) state.get("Moments"));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This extension returns one statistic of a summary created by {@link SummaryAttributeAggregator}.
+ */
+
+@Extension(
+        name = "summaryValue",
+        namespace = "stats",
+        description = "This extension returns one statistic of a summary returned by 'stats:summary()'.",
+        parameters = {
+                @Parameter(name = "summary",
+                        description = "The summary returned by 'stats:summary()'.",
+                        type = {DataType.OBJECT}),
+                @Parameter(name = "statistic",
+                        description = "The statistic to be returned, one of 'count', 'min', 'max', 'mean', " +
+                                "'stddev' and 'median'.",
+                        type = {DataType.STRING})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the statistic as a 'double' value, or null if the summary is null.",
+                type = {DataType.DOUBLE}),
+        examples = @Example(
+                syntax = "from SummaryStream" +
+                        "\nselect stats:summaryValue(summary, 'stddev') as latencyStdDev" +
+                        "\ninsert into OutputStream;",
+                description = "This returns the standard deviation held by each summary."
+        )
+)
+public class SummaryValueFunctionExecutor extends FunctionExecutor {
+    private static final List<String> STATISTICS = Arrays.asList(SummaryAttributeAggregator.COUNT,
+            SummaryAttributeAggregator.MIN, SummaryAttributeAggregator.MAX, SummaryAttributeAggregator.MEAN,
+            SummaryAttributeAggregator.STANDARD_DEVIATION, SummaryAttributeAggregator.MEDIAN);
+
+    @Override
+    protected StateFactory init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 2) {
+            throw new OperationNotSupportedException("Summary value function has to have exactly 2 " +
+                    "parameters, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.OBJECT) {
+            throw new OperationNotSupportedException("Summary value not supported for " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppValidationException("The statistic parameter of the summary value function " +
+                    "should be a constant");
+        }
+        Object statistic = ((ConstantExpressionExecutor) attributeExpressionExecutors[1]).getValue();
+        if (!STATISTICS.contains(statistic)) {
+            throw new SiddhiAppValidationException("The statistic parameter of the summary value function " +
+                    "should be one of " + STATISTICS + ", but found " + statistic);
+        }
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (!(data[0] instanceof Map)) {
+            return null;
+        }
+        Object value = ((Map) data[0]).get(data[1]);
+        return value == null ? null : ((Number) value).doubleValue();
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        return new IllegalStateException("Summary value cannot process a single argument, but found " +
+                data);
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.DOUBLE;
+    }
+}
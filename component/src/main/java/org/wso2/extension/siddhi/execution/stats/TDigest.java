@@ -0,0 +1,382 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Merging t-digest, a sketch that estimates quantiles of a stream in memory bounded by its compression.
+ * <p>
+ * Values are kept in a small sorted buffer, which is merged into a sorted array of weighted centroids
+ * only once it is full. Quantiles are estimated from the centroids and the buffered values together,
+ * without merging, so answering a quantile after every event costs a scan rather than a merge. The k1
+ * scale function keeps centroids near the tails small, so extreme quantiles are more accurate than
+ * central ones. The number of centroids stays in the order of the compression, regardless of how many
+ * values are added.
+ * <p>
+ * Removal is approximate, since the digest does not remember individual values once they are merged.
+ * A removed value is taken out of the buffer if it is still there, and otherwise takes one unit of
+ * weight away from the centroid whose mean is closest to it.
+ * <p>
+ * Digests are mergeable, which lets per-second digests of an incremental aggregation be rolled up
+ * into minutes, hours and beyond without revisiting the raw events. Their arrays start out sized for the
+ * values they hold and grow with them, so the digest of a single value takes no more than one value's
+ * worth of buffer.
+ */
+final class TDigest implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final double[] NO_VALUES = new double[0];
+
+    private final double compression;
+    private final double normalizer;
+
+    private double[] means;
+    private double[] weights;
+    private int centroidCount;
+    private transient double[] mergedMeans;
+    private transient double[] mergedWeights;
+
+    private transient double[] added;
+    private transient int addedCount;
+
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    TDigest(double compression) {
+        this.compression = compression;
+        this.normalizer = compression / (2 * Math.PI);
+        this.means = NO_VALUES;
+        this.weights = NO_VALUES;
+        this.added = NO_VALUES;
+    }
+
+    /**
+     * Creates an exact copy of the given digest, buffered values included.
+     */
+    TDigest(TDigest digest) {
+        this.compression = digest.compression;
+        this.normalizer = digest.normalizer;
+        this.means = Arrays.copyOf(digest.means, digest.centroidCount);
+        this.weights = Arrays.copyOf(digest.weights, digest.centroidCount);
+        this.centroidCount = digest.centroidCount;
+        this.added = Arrays.copyOf(digest.added, digest.addedCount);
+        this.addedCount = digest.addedCount;
+        this.count = digest.count;
+        this.min = digest.min;
+        this.max = digest.max;
+    }
+
+    double getCompression() {
+        return compression;
+    }
+
+    long size() {
+        return count;
+    }
+
+    void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (addedCount == added.length) {
+            if (added.length < bufferSize()) {
+                added = Arrays.copyOf(added, Math.min(bufferSize(), Math.max(1, added.length * 2)));
+            } else {
+                flush();
+            }
+        }
+        int insertion = Arrays.binarySearch(added, 0, addedCount, value);
+        if (insertion < 0) {
+            insertion = -insertion - 1;
+        }
+        System.arraycopy(added, insertion, added, insertion + 1, addedCount - insertion);
+        added[insertion] = value;
+        addedCount++;
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    void remove(double value) {
+        if (Double.isNaN(value) || count == 0) {
+            return;
+        }
+        int buffered = Arrays.binarySearch(added, 0, addedCount, value);
+        if (buffered < 0 && centroidCount == 0) {
+            // Only buffered values are left, so take the closest of them.
+            int insertion = -buffered - 1;
+            buffered = insertion == addedCount ||
+                    (insertion > 0 && value - added[insertion - 1] <= added[insertion] - value) ?
+                    insertion - 1 : insertion;
+        }
+        if (buffered >= 0) {
+            System.arraycopy(added, buffered + 1, added, buffered, addedCount - buffered - 1);
+            addedCount--;
+        } else {
+            removeFromCentroids(value);
+        }
+        if (--count == 0 || centroidCount + addedCount == 0) {
+            clear();
+            return;
+        }
+        if (value <= min) {
+            min = Math.min(centroidCount > 0 ? means[0] : Double.POSITIVE_INFINITY,
+                    addedCount > 0 ? added[0] : Double.POSITIVE_INFINITY);
+        }
+        if (value >= max) {
+            max = Math.max(centroidCount > 0 ? means[centroidCount - 1] : Double.NEGATIVE_INFINITY,
+                    addedCount > 0 ? added[addedCount - 1] : Double.NEGATIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Adds all values summarised by the given digest to this digest. The given digest, which may well be
+     * shared, is left as it is: its buffered values are merged from its buffer rather than flushed first.
+     */
+    void merge(TDigest digest) {
+        if (digest.count == 0) {
+            return;
+        }
+        flush();
+        if (digest.centroidCount > 0) {
+            mergeSorted(digest.means, digest.weights, digest.centroidCount);
+        }
+        if (digest.addedCount > 0) {
+            mergeSorted(digest.added, null, digest.addedCount);
+        }
+        count += digest.count;
+        min = Math.min(min, digest.min);
+        max = Math.max(max, digest.max);
+    }
+
+    void clear() {
+        centroidCount = 0;
+        addedCount = 0;
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Estimates the value at the given quantile, interpolating between the centres of neighbouring
+     * centroids, and between the extreme centroids and the observed minimum and maximum. Buffered values
+     * count as centroids of a single value, in order among the merged ones, and are not merged.
+     *
+     * @param quantile a value between 0 and 1
+     */
+    double quantile(double quantile) {
+        if (count == 0) {
+            return 0.0;
+        }
+        if (centroidCount + addedCount == 1) {
+            return centroidCount == 1 ? means[0] : added[0];
+        }
+        double totalWeight = addedCount;
+        for (int i = 0; i < centroidCount; i++) {
+            totalWeight += weights[i];
+        }
+        double index = quantile * totalWeight;
+        int centroid = 0;
+        int value = 0;
+        boolean fromCentroids = isCentroidNext(centroid, value);
+        double mean = fromCentroids ? means[centroid] : added[value];
+        double weight = fromCentroids ? weights[centroid++] : 1;
+        value += fromCentroids ? 0 : 1;
+        double center = weight / 2;
+        if (index <= center) {
+            return interpolate(min, mean, index / center);
+        }
+        while (centroid < centroidCount || value < addedCount) {
+            fromCentroids = isCentroidNext(centroid, value);
+            double nextMean = fromCentroids ? means[centroid] : added[value];
+            double nextWeight = fromCentroids ? weights[centroid++] : 1;
+            value += fromCentroids ? 0 : 1;
+            double nextCenter = center + (weight + nextWeight) / 2;
+            if (index < nextCenter) {
+                return interpolate(mean, nextMean, (index - center) / (nextCenter - center));
+            }
+            center = nextCenter;
+            mean = nextMean;
+            weight = nextWeight;
+        }
+        return interpolate(mean, max, (index - center) / (totalWeight - center));
+    }
+
+    /**
+     * Returns whether the centroid at the given index comes before the buffered value at the given index.
+     */
+    private boolean isCentroidNext(int centroid, int value) {
+        return value == addedCount || (centroid < centroidCount && means[centroid] <= added[value]);
+    }
+
+    byte[] toBytes() {
+        flush();
+        ByteBuffer out = ByteBuffer.allocate(8 * 4 + 4 + centroidCount * 16);
+        out.putDouble(compression).putLong(count).putDouble(min).putDouble(max).putInt(centroidCount);
+        for (int i = 0; i < centroidCount; i++) {
+            out.putDouble(means[i]).putDouble(weights[i]);
+        }
+        return out.array();
+    }
+
+    static TDigest fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        TDigest digest = new TDigest(in.getDouble());
+        digest.count = in.getLong();
+        digest.min = in.getDouble();
+        digest.max = in.getDouble();
+        digest.centroidCount = in.getInt();
+        digest.ensureCapacity(digest.centroidCount);
+        for (int i = 0; i < digest.centroidCount; i++) {
+            digest.means[i] = in.getDouble();
+            digest.weights[i] = in.getDouble();
+        }
+        return digest;
+    }
+
+    private static double interpolate(double from, double to, double fraction) {
+        return from + (to - from) * Math.max(0, Math.min(1, fraction));
+    }
+
+    private void flush() {
+        if (addedCount > 0) {
+            mergeSorted(added, null, addedCount);
+            addedCount = 0;
+        }
+    }
+
+    /**
+     * Merges sorted weighted values with the sorted centroids in a single pass, combining neighbours for
+     * as long as the combined centroid spans no more than one unit of the scale function.
+     *
+     * @param valueWeights weights of the values, or null if each value has a weight of one
+     */
+    private void mergeSorted(double[] values, double[] valueWeights, int valueCount) {
+        double totalWeight = 0;
+        for (int i = 0; i < centroidCount; i++) {
+            totalWeight += weights[i];
+        }
+        for (int i = 0; i < valueCount; i++) {
+            totalWeight += valueWeights == null ? 1 : valueWeights[i];
+        }
+        ensureMergeCapacity(centroidCount + valueCount);
+        int merged = 0;
+        double weightSoFar = 0;
+        double weightLimit = totalWeight * quantileOfScale(scaleOfQuantile(0) + 1);
+        int centroid = 0;
+        int value = 0;
+        while (centroid < centroidCount || value < valueCount) {
+            double mean;
+            double weight;
+            if (value == valueCount || (centroid < centroidCount && means[centroid] <= values[value])) {
+                mean = means[centroid];
+                weight = weights[centroid++];
+            } else {
+                mean = values[value];
+                weight = valueWeights == null ? 1 : valueWeights[value];
+                value++;
+            }
+            if (merged > 0 && weightSoFar + mergedWeights[merged - 1] + weight <= weightLimit) {
+                double combinedWeight = mergedWeights[merged - 1] + weight;
+                mergedMeans[merged - 1] += (mean - mergedMeans[merged - 1]) * weight / combinedWeight;
+                mergedWeights[merged - 1] = combinedWeight;
+            } else {
+                if (merged > 0) {
+                    weightSoFar += mergedWeights[merged - 1];
+                    weightLimit = totalWeight * quantileOfScale(scaleOfQuantile(weightSoFar / totalWeight) + 1);
+                }
+                mergedMeans[merged] = mean;
+                mergedWeights[merged++] = weight;
+            }
+        }
+        double[] swap = means;
+        means = mergedMeans;
+        mergedMeans = swap;
+        swap = weights;
+        weights = mergedWeights;
+        mergedWeights = swap;
+        centroidCount = merged;
+    }
+
+    private void removeFromCentroids(double value) {
+        int nearest = nearestCentroid(value);
+        if (weights[nearest] > 1) {
+            weights[nearest]--;
+        } else {
+            System.arraycopy(means, nearest + 1, means, nearest, centroidCount - nearest - 1);
+            System.arraycopy(weights, nearest + 1, weights, nearest, centroidCount - nearest - 1);
+            centroidCount--;
+        }
+    }
+
+    private int nearestCentroid(double value) {
+        int index = Arrays.binarySearch(means, 0, centroidCount, value);
+        if (index >= 0) {
+            return index;
+        }
+        int insertion = -index - 1;
+        if (insertion == 0) {
+            return 0;
+        } else if (insertion == centroidCount) {
+            return centroidCount - 1;
+        }
+        return value - means[insertion - 1] <= means[insertion] - value ? insertion - 1 : insertion;
+    }
+
+    private double scaleOfQuantile(double quantile) {
+        return normalizer * Math.asin(2 * Math.min(1, quantile) - 1);
+    }
+
+    private double quantileOfScale(double scale) {
+        double angle = scale / normalizer;
+        return angle >= Math.PI / 2 ? 1 : (Math.sin(angle) + 1) / 2;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (means.length < capacity) {
+            means = Arrays.copyOf(means, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+    }
+
+    private void ensureMergeCapacity(int capacity) {
+        if (mergedMeans == null || mergedMeans.length < capacity) {
+            mergedMeans = new double[capacity];
+            mergedWeights = new double[capacity];
+        }
+    }
+
+    private int bufferSize() {
+        return Math.max(32, (int) compression);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        flush();
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        added = NO_VALUES;
+    }
+}
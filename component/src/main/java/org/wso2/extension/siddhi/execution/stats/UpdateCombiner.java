@@ -0,0 +1,140 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Applies updates from several threads to a state that is not thread safe, by flat combining.
+ * <p>
+ * A thread that finds the state free applies its own update, and those of any threads waiting, and
+ * computes the result once for all of them. A thread that finds it busy queues its update and mostly
+ * spins until another thread has applied it, so the state is only ever touched by one thread at a time,
+ * but the threads seldom block, and the result is computed once per batch of updates rather than once per
+ * update. A single thread only pays for an uncontended lock.
+ * <p>
+ * Every update is answered with a result computed after it was applied, though possibly after updates
+ * made concurrently by other threads as well.
+ */
+final class UpdateCombiner {
+    private static final int MAX_SPINS = 64;
+    private static final int MAX_COMBINED = 256;
+
+    /**
+     * The state updated.
+     */
+    interface Target {
+        void apply(Object value, boolean add);
+
+        Object result();
+    }
+
+    private final Target target;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentLinkedQueue<Update> pending = new ConcurrentLinkedQueue<>();
+    private final List<Update> combined = new ArrayList<>();
+
+    UpdateCombiner(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * Adds or removes the given value, and returns the result of the target after doing so.
+     */
+    Object apply(Object value, boolean add) {
+        Update update = null;
+        if (!lock.tryLock()) {
+            update = new Update(value, add);
+            pending.add(update);
+            if (!awaitLock(update)) {
+                return update.result;
+            }
+        }
+        try {
+            if (update != null && update.done) {
+                return update.result;
+            }
+            Update next;
+            while ((combined.size() < MAX_COMBINED || (update != null && !update.applied))
+                    && (next = pending.poll()) != null) {
+                target.apply(next.value, next.add);
+                next.applied = true;
+                combined.add(next);
+            }
+            if (update == null) {
+                target.apply(value, add);
+            }
+            Object result = target.result();
+            for (Update done : combined) {
+                done.result = result;
+                done.done = true;
+            }
+            combined.clear();
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the given action on the target without any update being applied meanwhile.
+     */
+    <T> T exclusively(Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the given update has been applied by another thread, or the lock is acquired.
+     *
+     * @return true if the lock was acquired
+     */
+    private boolean awaitLock(Update update) {
+        for (int spins = 0; spins < MAX_SPINS; spins++) {
+            if (update.done) {
+                return false;
+            }
+            if (lock.tryLock()) {
+                return true;
+            }
+            Thread.yield();
+        }
+        lock.lock();
+        return true;
+    }
+
+    private static final class Update {
+        private final Object value;
+        private final boolean add;
+        private boolean applied;
+        private Object result;
+        private volatile boolean done;
+
+        private Update(Object value, boolean add) {
+            this.value = value;
+            this.add = add;
+        }
+    }
+}
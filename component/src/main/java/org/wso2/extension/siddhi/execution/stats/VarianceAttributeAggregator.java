@@ -0,0 +1,66 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+
+/**
+ * This extension returns the population variance of aggregated events.
+ */
+
+@Extension(
+        name = "variance",
+        namespace = "stats",
+        description = "This extension returns the population variance of aggregated events." +
+                "\n " +
+                "Unlike the sum of squares formula, Welford's method does not lose precision to " +
+                "cancellation when the values are large compared to their spread. Expired events reverse " +
+                "the update of their arrival, so each event costs O(1), and the updates are compensated " +
+                "so that rounding errors do not build up over long running windows.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its " +
+                                "population variance.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the population variance as a 'double' value for all data " +
+                        "types, i.e., for 'int', 'long', 'double' and 'float'.",
+                type = {DataType.DOUBLE}),
+        examples = @Example(
+                syntax = "from InputStream#window.length(5)" +
+                        "\nselect stats:variance(price) as priceVariance" +
+                        "\ninsert into OutputStream;",
+                description = "This returns the population variance of the price values of the last five " +
+                        "events as a 'double' value, with the arrival and expiry of each event."
+        )
+)
+public class VarianceAttributeAggregator extends MomentAttributeAggregator {
+
+    @Override
+    String statisticName() {
+        return "Variance";
+    }
+
+    @Override
+    double statistic(WelfordMoments moments) {
+        return moments.variance();
+    }
+}
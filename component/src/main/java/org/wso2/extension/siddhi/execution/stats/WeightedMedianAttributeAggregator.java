@@ -0,0 +1,213 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.siddhi.query.api.definition.Attribute.Type.DOUBLE;
+import static io.siddhi.query.api.definition.Attribute.Type.FLOAT;
+import static io.siddhi.query.api.definition.Attribute.Type.INT;
+import static io.siddhi.query.api.definition.Attribute.Type.LONG;
+
+/**
+ * This extension returns the weighted median of aggregated events.
+ */
+
+@Extension(
+        name = "weightedMedian",
+        namespace = "stats",
+        description = "This extension returns the weighted median of aggregated events, the value such that " +
+                "the events with smaller values and those with larger values each weigh at most half the " +
+                "total weight, e.g. the volume weighted median price of trades." +
+                "\n " +
+                "The values are kept in an order-statistic tree augmented with the sum of the weights of " +
+                "each subtree, so the arrival and expiry of each event, and the search for the weighted " +
+                "median, take O(log n) time. When the values up to one of them weigh half the total, to " +
+                "within a relative error of 1e-9 that absorbs the rounding of fractional weights, the median " +
+                "is the mean of that value and the next, so that with equal weights it is the same as " +
+                "'stats:median()'. Events with a null value or weight, or a weight that is " +
+                "not a positive finite number, are ignored.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its weighted " +
+                                "median.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+                @Parameter(name = "weight",
+                        description = "The weight of the value, such as the volume of a trade.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the weighted median as a 'double' value for all data " +
+                        "types, i.e., for 'int', 'long', 'double' and 'float'.",
+                type = {DataType.DOUBLE}),
+        examples = {
+                @Example(
+                        syntax = "from TradeStream#window.time(5 min)" +
+                                "\nselect symbol, stats:weightedMedian(price, volume) as medianPrice" +
+                                "\ngroup by symbol" +
+                                "\ninsert into OutputStream;",
+                        description = "This returns the volume weighted median price of the trades of each " +
+                                "symbol in the last five minutes, with the arrival and expiry of each trade."
+                )
+        }
+)
+public class WeightedMedianAttributeAggregator
+        extends AttributeAggregatorExecutor<WeightedMedianAttributeAggregator.ExtensionState> {
+
+    private static final double HALF_WEIGHT_TOLERANCE = 1e-9;
+
+    private boolean integral;
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode,
+                                                boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        if (attributeExpressionExecutors.length != 2) {
+            throw new OperationNotSupportedException("Weighted median aggregator has to have exactly 2 " +
+                    "parameters, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+
+        Attribute.Type type = attributeExpressionExecutors[0].getReturnType();
+        if (type != DOUBLE && type != INT && type != FLOAT && type != LONG) {
+            throw new OperationNotSupportedException("Weighted median not supported for " + type);
+        }
+        this.integral = type == INT || type == LONG;
+
+        Attribute.Type weightType = attributeExpressionExecutors[1].getReturnType();
+        if (weightType != DOUBLE && weightType != INT && weightType != FLOAT && weightType != LONG) {
+            throw new OperationNotSupportedException("Weighted median not supported for weights of type " +
+                    weightType);
+        }
+
+        return ExtensionState::new;
+    }
+
+    public Attribute.Type getReturnType() {
+        return DOUBLE;
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        return new IllegalStateException("Weighted median cannot process a single argument, but found " + data);
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        if (isWeighed(data)) {
+            state.values.add(encode(data[0]), ((Number) data[1]).doubleValue());
+        }
+        return weightedMedian(state.values);
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        return new IllegalStateException("Weighted median cannot process a single argument, but found " + data);
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        if (isWeighed(data)) {
+            state.values.remove(encode(data[0]), ((Number) data[1]).doubleValue());
+        }
+        return weightedMedian(state.values);
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        state.values.clear();
+        return 0.0;
+    }
+
+    public void start() {
+    }
+
+    public void stop() {
+    }
+
+    private static boolean isWeighed(Object[] data) {
+        if (data[0] == null || data[1] == null) {
+            return false;
+        }
+        double weight = ((Number) data[1]).doubleValue();
+        return weight > 0 && weight < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Maps values onto order preserving keys, as {@link OrderStatisticStore} does.
+     */
+    private long encode(Object value) {
+        return integral ? ((Number) value).longValue() :
+                OrderStatisticStore.encodeDouble(((Number) value).doubleValue());
+    }
+
+    private double decode(long key) {
+        return integral ? key : OrderStatisticStore.decodeDouble(key);
+    }
+
+    private double weightedMedian(OrderStatisticTree.Weighted values) {
+        if (values.isEmpty()) {
+            return 0.0;
+        }
+        // Cumulative weights are summed in another order than the total, so they may miss exactly half
+        // of it by a few ulps.
+        double half = values.totalWeight() / 2;
+        double tolerance = half * HALF_WEIGHT_TOLERANCE;
+        long lower = values.selectByWeight(half - tolerance, false);
+        long upper = values.selectByWeight(half + tolerance, true);
+        return lower == upper ? decode(lower) : (decode(lower) + decode(upper)) / 2.0;
+    }
+
+    static class ExtensionState extends State {
+        private final OrderStatisticTree.Weighted values = new OrderStatisticTree.Weighted();
+
+        @Override
+        public boolean canDestroy() {
+            return values.isEmpty();
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            Map<String, Object> state = new HashMap<>();
+            state.put("Values", values.toBytes());
+            return state;
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            values.restore((byte[]) state.get("Values"));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Running mean and sum of squared deviations of a window of values, kept with Welford's updates.
+ * <p>
+ * Adding or removing a value costs O(1). Removal reverses the update that added the value, and both
+ * accumulators are Kahan compensated so that rounding errors do not build up over the many add and
+ * remove pairs of a long running sliding window. Values are also taken relative to a shift, which starts
+ * at the first value added, or the first added after the window emptied, and moves to the mean whenever
+ * the mean drifts further from it than the standard deviation. A large common offset, such as that of
+ * timestamps, thus costs no precision, nor do values that drift far away from where the window started.
+ */
+final class WelfordMoments {
+    private long count;
+    private double shift;
+    private double mean;
+    private double meanCompensation;
+    private double m2;
+    private double m2Compensation;
+
+    long count() {
+        return count;
+    }
+
+    double mean() {
+        return count == 0 ? 0.0 : shift + mean;
+    }
+
+    /**
+     * Returns the population variance, which is 0 for fewer than two values.
+     */
+    double variance() {
+        return count < 2 ? 0.0 : Math.max(0.0, m2 / count);
+    }
+
+    double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    void add(double value) {
+        if (count == 0) {
+            shift = value;
+        }
+        value -= shift;
+        count++;
+        double delta = value - mean;
+        addToMean(delta / count);
+        addToM2(delta * (value - mean));
+        rebaseIfDrifted();
+    }
+
+    void remove(double value) {
+        if (count <= 1) {
+            clear();
+            return;
+        }
+        value -= shift;
+        count--;
+        double delta = value - mean;
+        addToMean(-delta / count);
+        addToM2(-delta * (value - mean));
+        rebaseIfDrifted();
+    }
+
+    /**
+     * Moves the shift to the mean once the mean is further from it than the standard deviation, beyond
+     * which the deviations of values would be the small difference of two large numbers. The sum of
+     * squared deviations does not depend on the shift, so only the mean is adjusted.
+     */
+    private void rebaseIfDrifted() {
+        if (mean * mean * count > m2) {
+            double rebased = shift + mean;
+            mean -= rebased - shift;
+            shift = rebased;
+        }
+    }
+
+    void clear() {
+        count = 0;
+        shift = 0;
+        mean = 0;
+        meanCompensation = 0;
+        m2 = 0;
+        m2Compensation = 0;
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> state = new HashMap<>();
+        state.put("Count", count);
+        state.put("Shift", shift);
+        state.put("Mean", mean);
+        state.put("MeanCompensation", meanCompensation);
+        state.put("M2", m2);
+        state.put("M2Compensation", m2Compensation);
+        return state;
+    }
+
+    void restore(Map<String, Object> state) {
+        count = (Long) state.get("Count");
+        shift = (Double) state.get("Shift");
+        mean = (Double) state.get("Mean");
+        meanCompensation = (Double) state.get("MeanCompensation");
+        m2 = (Double) state.get("M2");
+        m2Compensation = (Double) state.get("M2Compensation");
+    }
+
+    private void addToMean(double step) {
+        double compensated = step - meanCompensation;
+        double sum = mean + compensated;
+        meanCompensation = (sum - mean) - compensated;
+        mean = sum;
+    }
+
+    private void addToM2(double step) {
+        double compensated = step - m2Compensation;
+        double sum = m2 + compensated;
+        m2Compensation = (sum - m2) - compensated;
+        m2 = sum;
+    }
+}
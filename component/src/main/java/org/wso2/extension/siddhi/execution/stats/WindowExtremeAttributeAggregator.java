@@ -0,0 +1,170 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.OperationNotSupportedException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Base of the aggregators that return the minimum or maximum of a window from a {@link MonotonicDeque}.
+ * <p>
+ * Values are mapped onto order preserving {@code long} keys as in {@link OrderStatisticStore}, and
+ * mapped back to the attribute type when returned.
+ */
+abstract class WindowExtremeAttributeAggregator
+        extends AttributeAggregatorExecutor<WindowExtremeAttributeAggregator.ExtensionState> {
+    private Attribute.Type type;
+
+    /**
+     * Returns whether the maximum rather than the minimum is aggregated.
+     */
+    abstract boolean maximum();
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode,
+                                                boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader,
+                                                SiddhiQueryContext siddhiQueryContext) {
+        String name = maximum() ? "Window max" : "Window min";
+        if (attributeExpressionExecutors.length != 1) {
+            throw new OperationNotSupportedException(name + " aggregator has to have exactly 1 " +
+                    "parameter, currently " + attributeExpressionExecutors.length + " parameters are " +
+                    "provided");
+        }
+        type = attributeExpressionExecutors[0].getReturnType();
+        switch (type) {
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                break;
+            default:
+                throw new OperationNotSupportedException(name + " not supported for " + type);
+        }
+        return ExtensionState::new;
+    }
+
+    public Attribute.Type getReturnType() {
+        return type;
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        if (data == null) {
+            state.deque.skip();
+        } else {
+            state.deque.add(encode(data));
+        }
+        return extreme(state);
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        if (data == null) {
+            state.deque.expireSkipped();
+        } else {
+            state.deque.expire(encode(data));
+        }
+        return extreme(state);
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        return new IllegalStateException("Window extreme cannot process data array, but found " +
+                Arrays.deepToString(data));
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        return new IllegalStateException("Window extreme cannot process data array, but found " +
+                Arrays.deepToString(data));
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        state.deque.clear();
+        return null;
+    }
+
+    private Object extreme(ExtensionState state) {
+        return state.deque.isEmpty() ? null : decode(state.deque.extreme());
+    }
+
+    private long encode(Object value) {
+        switch (type) {
+            case INT:
+                return (Integer) value;
+            case LONG:
+                return (Long) value;
+            case FLOAT:
+                return OrderStatisticStore.encodeDouble((Float) value);
+            default:
+                return OrderStatisticStore.encodeDouble((Double) value);
+        }
+    }
+
+    private Object decode(long key) {
+        switch (type) {
+            case INT:
+                return (int) key;
+            case LONG:
+                return key;
+            case FLOAT:
+                return (float) OrderStatisticStore.decodeDouble(key);
+            default:
+                return OrderStatisticStore.decodeDouble(key);
+        }
+    }
+
+    public void start() {
+    }
+
+    public void stop() {
+    }
+
+    class ExtensionState extends State {
+        private final MonotonicDeque deque = new MonotonicDeque(maximum());
+
+        @Override
+        public boolean canDestroy() {
+            return deque.isExhausted();
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            Map<String, Object> state = new HashMap<>();
+            state.put("Deque", deque.toArray());
+            return state;
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            deque.restore((long[]) state.get("Deque"));
+        }
+    }
+}
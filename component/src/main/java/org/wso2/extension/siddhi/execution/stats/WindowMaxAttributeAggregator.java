@@ -0,0 +1,59 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+
+/**
+ * This extension returns the maximum of aggregated events of windows that expire events in arrival order.
+ */
+
+@Extension(
+        name = "windowMax",
+        namespace = "stats",
+        description = "This extension returns the maximum of aggregated events." +
+                "\n " +
+                "It is the counterpart of 'stats:windowMin()', keeping in a monotonic double ended queue " +
+                "only the values that may still become the maximum, and has the same requirement that " +
+                "events expire in the order they arrived. Use 'max' with other windows.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its maximum.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the maximum in the type of the aggregated values, or null if there are " +
+                        "none.",
+                type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+        examples = @Example(
+                syntax = "from InputStream#window.time(10 min)" +
+                        "\nselect stats:windowMax(price) as maxPrice" +
+                        "\ninsert into OutputStream;",
+                description = "This returns the largest price of the last ten minutes, with the arrival and " +
+                        "expiry of each event."
+        )
+)
+public class WindowMaxAttributeAggregator extends WindowExtremeAttributeAggregator {
+
+    @Override
+    boolean maximum() {
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+
+/**
+ * This extension returns the minimum of aggregated events of windows that expire events in arrival order.
+ */
+
+@Extension(
+        name = "windowMin",
+        namespace = "stats",
+        description = "This extension returns the minimum of aggregated events." +
+                "\n " +
+                "Only values that may still become the minimum are kept, in a monotonic double ended " +
+                "queue, so each event costs amortized O(1) without allocating. This relies on the window " +
+                "expiring events in the order they arrived, as length, time and batch windows do, and " +
+                "fails for windows such as the sort window, where 'min' should be used instead.",
+        parameters = {
+                @Parameter(name = "data",
+                        description = "The value that needs to be aggregated in order to obtain its minimum.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT})
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "Returns the minimum in the type of the aggregated values, or null if there are " +
+                        "none.",
+                type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}),
+        examples = @Example(
+                syntax = "from InputStream#window.time(10 min)" +
+                        "\nselect stats:windowMin(price) as minPrice" +
+                        "\ninsert into OutputStream;",
+                description = "This returns the smallest price of the last ten minutes, with the arrival and " +
+                        "expiry of each event."
+        )
+)
+public class WindowMinAttributeAggregator extends WindowExtremeAttributeAggregator {
+
+    @Override
+    boolean maximum() {
+        return false;
+    }
+}
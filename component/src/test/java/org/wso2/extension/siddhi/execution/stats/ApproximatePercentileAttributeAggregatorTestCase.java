@@ -0,0 +1,150 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test cases for the approximate percentile extension.
+ */
+public class ApproximatePercentileAttributeAggregatorTestCase {
+
+    private static final Logger log = Logger.getLogger(ApproximatePercentileAttributeAggregatorTestCase.class);
+    private int count;
+    private double lastValue;
+
+    @BeforeMethod
+    public void init() {
+        count = 0;
+        lastValue = 0;
+    }
+
+    @Test
+    public void testApproximatePercentile1() throws InterruptedException {
+        log.info("ApproximatePercentileTestCase Int Sliding Length Window TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt int); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:approximatePercentile(tt, 50) as tt insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    count++;
+                    switch (count) {
+                        case 1:
+                            AssertJUnit.assertEquals(1.0, ev.getData(0));
+                            break;
+                        case 2:
+                            AssertJUnit.assertEquals(1.5, ev.getData(0));
+                            break;
+                        case 3:
+                            AssertJUnit.assertEquals(2.0, ev.getData(0));
+                            break;
+                        case 4:
+                            AssertJUnit.assertEquals(2.5, ev.getData(0));
+                            break;
+                        case 5:
+                            AssertJUnit.assertEquals(3.0, ev.getData(0));
+                            break;
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{1});
+        inputHandler.send(new Object[]{2});
+        inputHandler.send(new Object[]{3});
+        inputHandler.send(new Object[]{4});
+        inputHandler.send(new Object[]{5});
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(5, count);
+    }
+
+    @Test
+    public void testApproximatePercentile2() throws InterruptedException {
+        log.info("ApproximatePercentileTestCase Double Large Window Accuracy TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(100000) " +
+                "select stats:approximatePercentile(tt, 99, 200) as tt insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                lastValue = (Double) events[events.length - 1].getData(0);
+            }
+        });
+
+        Random random = new Random(11);
+        double[] values = new double[100000];
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian();
+            inputHandler.send(new Object[]{values[i]});
+        }
+        siddhiAppRuntime.shutdown();
+
+        Arrays.sort(values);
+        AssertJUnit.assertEquals(values[99000], lastValue, 0.02);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testApproximatePercentile3() {
+        log.info("ApproximatePercentileTestCase Percentile Out Of Range TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:approximatePercentile(tt, 150) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testApproximatePercentile4() {
+        log.info("ApproximatePercentileTestCase Non Constant Percentile TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double, p double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:approximatePercentile(tt, p) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+}
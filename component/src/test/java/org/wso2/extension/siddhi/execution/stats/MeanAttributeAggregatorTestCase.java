@@ -0,0 +1,99 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.CannotRestoreSiddhiAppStateException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.persistence.InMemoryPersistenceStore;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test cases for the mean extension.
+ */
+public class MeanAttributeAggregatorTestCase {
+
+    private static final Logger log = Logger.getLogger(MeanAttributeAggregatorTestCase.class);
+
+    @Test
+    public void testMean1() throws InterruptedException {
+        log.info("MeanTestCase Int Sliding Length Window TestCase");
+        String inStreamDefinition = "define stream inputStream (tt int); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(3) " +
+                "select stats:mean(tt) as tt insert into filteredOutputStream";
+        List<Object> results = QueryTestHelper.runQueryForValues(inStreamDefinition + query,
+                new Object[]{1}, new Object[]{2}, new Object[]{3}, new Object[]{4}, new Object[]{8});
+
+        AssertJUnit.assertEquals(Arrays.asList(1.0, 1.5, 2.0, 3.0, 5.0), results);
+    }
+
+    @Test
+    public void testMean2() throws InterruptedException {
+        log.info("MeanTestCase Restore Into New Runtime In The Middle Of A Window TestCase");
+        List<Object> results = new ArrayList<>();
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setPersistenceStore(new InMemoryPersistenceStore());
+
+        String siddhiApp = "@app:name('MeanPersistenceApp') " +
+                "define stream inputStream (tt long); " +
+                "@info(name = 'query1') " + "from inputStream#window.length(3) " +
+                "select stats:mean(tt) as tt insert into filteredOutputStream";
+        StreamCallback callback = new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    results.add(ev.getData(0));
+                }
+            }
+        };
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{10L});
+        inputHandler.send(new Object[]{20L});
+        siddhiAppRuntime.persist();
+        Thread.sleep(100);
+        siddhiAppRuntime.shutdown();
+
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        try {
+            siddhiAppRuntime.restoreLastRevision();
+        } catch (CannotRestoreSiddhiAppStateException e) {
+            log.error(e.getMessage(), e);
+        }
+        inputHandler.send(new Object[]{30L});
+        inputHandler.send(new Object[]{60L});
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(4, results.size());
+        AssertJUnit.assertEquals(Arrays.asList(10.0, 15.0, 20.0), results.subList(0, 3));
+        AssertJUnit.assertEquals(110.0 / 3, (Double) results.get(3), 1e-9);
+    }
+}
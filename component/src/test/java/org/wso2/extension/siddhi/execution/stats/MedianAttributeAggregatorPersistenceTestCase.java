@@ -23,11 +23,15 @@ import io.siddhi.core.exception.CannotRestoreSiddhiAppStateException;
 import io.siddhi.core.stream.input.InputHandler;
 import io.siddhi.core.stream.output.StreamCallback;
 import io.siddhi.core.util.persistence.InMemoryPersistenceStore;
+import io.siddhi.core.util.persistence.IncrementalFileSystemPersistenceStore;
+import io.siddhi.core.util.persistence.IncrementalPersistenceStore;
 import io.siddhi.core.util.persistence.PersistenceStore;
 import org.apache.log4j.Logger;
 import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+
 public class MedianAttributeAggregatorPersistenceTestCase {
     private static final Logger log = Logger.getLogger(MedianAttributeAggregatorPersistenceTestCase.class);
     private int count = 0;
@@ -351,4 +355,260 @@ public class MedianAttributeAggregatorPersistenceTestCase {
         inputHandler.send(new Object[]{7L});
         siddhiAppRuntime.shutdown();
     }
+
+    @Test
+    public void testPersistence5() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Restore Into New Runtime In The Middle Of A Window TestCase");
+        count = 0;
+        PersistenceStore persistenceStore = new InMemoryPersistenceStore();
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setPersistenceStore(persistenceStore);
+
+        String siddhiApp = "@app:name('MedianPersistenceApp') " +
+                "define stream inputStream (tt long); " +
+                "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:median(tt) as tt insert into filteredOutputStream";
+        StreamCallback callback = new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    count++;
+                    switch (count) {
+                        case 1:
+                            AssertJUnit.assertEquals(1.0, ev.getData(0));
+                            break;
+                        case 2:
+                            AssertJUnit.assertEquals(1.5, ev.getData(0));
+                            break;
+                        case 3:
+                            AssertJUnit.assertEquals(2.0, ev.getData(0));
+                            break;
+                        case 4:
+                            AssertJUnit.assertEquals(2.5, ev.getData(0));
+                            break;
+                        case 5:
+                            AssertJUnit.assertEquals(3.0, ev.getData(0));
+                            break;
+                        case 6:
+                            AssertJUnit.assertEquals(9.0, ev.getData(0));
+                            break;
+                        case 7:
+                            AssertJUnit.assertEquals(10.0, ev.getData(0));
+                            break;
+                    }
+                }
+            }
+        };
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{1L});
+        inputHandler.send(new Object[]{2L});
+        inputHandler.send(new Object[]{3L});
+        siddhiAppRuntime.persist();
+        Thread.sleep(100);
+        siddhiAppRuntime.shutdown();
+
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        try {
+            siddhiAppRuntime.restoreLastRevision();
+        } catch (CannotRestoreSiddhiAppStateException e) {
+            log.error(e.getMessage(), e);
+        }
+        inputHandler.send(new Object[]{9L});
+        inputHandler.send(new Object[]{10L});
+        inputHandler.send(new Object[]{11L});
+        inputHandler.send(new Object[]{12L});
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(7, count);
+    }
+
+    @Test
+    public void testPersistence6() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Incremental Persistence TestCase");
+        count = 0;
+        IncrementalPersistenceStore persistenceStore =
+                new IncrementalFileSystemPersistenceStore("target/snapshots/median");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setIncrementalPersistenceStore(persistenceStore);
+
+        String siddhiApp = "@app:name('MedianIncrementalPersistenceApp') " +
+                "define stream inputStream (tt int); " +
+                "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:median(tt) as tt insert into filteredOutputStream";
+        StreamCallback callback = new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    count++;
+                    switch (count) {
+                        case 1:
+                            AssertJUnit.assertEquals(1.0, ev.getData(0));
+                            break;
+                        case 2:
+                            AssertJUnit.assertEquals(1.5, ev.getData(0));
+                            break;
+                        case 3:
+                            AssertJUnit.assertEquals(2.0, ev.getData(0));
+                            break;
+                        case 4:
+                            AssertJUnit.assertEquals(2.5, ev.getData(0));
+                            break;
+                        case 5:
+                            AssertJUnit.assertEquals(3.0, ev.getData(0));
+                            break;
+                        case 6:
+                            AssertJUnit.assertEquals(4.0, ev.getData(0));
+                            break;
+                    }
+                }
+            }
+        };
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{1});
+        inputHandler.send(new Object[]{2});
+        inputHandler.send(new Object[]{3});
+        siddhiAppRuntime.persist();
+        Thread.sleep(100);
+        inputHandler.send(new Object[]{4});
+        siddhiAppRuntime.persist();
+        Thread.sleep(100);
+        siddhiAppRuntime.shutdown();
+
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        try {
+            siddhiAppRuntime.restoreLastRevision();
+        } catch (CannotRestoreSiddhiAppStateException e) {
+            log.error(e.getMessage(), e);
+        }
+        inputHandler.send(new Object[]{10});
+        inputHandler.send(new Object[]{11});
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(6, count);
+    }
+
+    @Test
+    public void testPersistence7() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Restore Relative Error Median TestCase");
+        count = 0;
+        PersistenceStore persistenceStore = new InMemoryPersistenceStore();
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setPersistenceStore(persistenceStore);
+
+        String siddhiApp = "@app:name('MedianRelativeErrorPersistenceApp') " +
+                "define stream inputStream (tt double); " +
+                "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:median(tt, 0.01) as tt insert into filteredOutputStream";
+        double[] expected = {100.0, 150.0, 200.0, 250.0, 300.0};
+        StreamCallback callback = new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    AssertJUnit.assertEquals(expected[count], (Double) ev.getData(0), expected[count] * 0.01);
+                    count++;
+                }
+            }
+        };
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{100.0});
+        inputHandler.send(new Object[]{200.0});
+        inputHandler.send(new Object[]{300.0});
+        siddhiAppRuntime.persist();
+        Thread.sleep(100);
+        siddhiAppRuntime.shutdown();
+
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        try {
+            siddhiAppRuntime.restoreLastRevision();
+        } catch (CannotRestoreSiddhiAppStateException e) {
+            log.error(e.getMessage(), e);
+        }
+        inputHandler.send(new Object[]{900.0});
+        inputHandler.send(new Object[]{1000.0});
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(5, count);
+    }
+
+    @Test
+    public void testPersistence8() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Restore Length Batch Window Median TestCase");
+        count = 0;
+        PersistenceStore persistenceStore = new InMemoryPersistenceStore();
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setPersistenceStore(persistenceStore);
+
+        String siddhiApp = "@app:name('MedianLengthBatchPersistenceApp') " +
+                "define stream inputStream (tt int); " +
+                "@info(name = 'query1') " + "from inputStream#window.lengthBatch(600) " +
+                "select stats:median(tt) as tt insert into filteredOutputStream";
+        // Distinct values, so that each batch outgrows the counting of repeated values and is kept in heaps.
+        int[] values = new int[1200];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i * 7919) % 10007;
+        }
+        double[] expected = new double[2];
+        for (int batch = 0; batch < expected.length; batch++) {
+            int[] sorted = Arrays.copyOfRange(values, batch * 600, (batch + 1) * 600);
+            Arrays.sort(sorted);
+            expected[batch] = (sorted[299] + sorted[300]) / 2.0;
+        }
+        StreamCallback callback = new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    AssertJUnit.assertEquals(expected[count], ev.getData(0));
+                    count++;
+                }
+            }
+        };
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int i = 0; i < 400; i++) {
+            inputHandler.send(new Object[]{values[i]});
+        }
+        siddhiAppRuntime.persist();
+        Thread.sleep(100);
+        siddhiAppRuntime.shutdown();
+
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("filteredOutputStream", callback);
+        inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        try {
+            siddhiAppRuntime.restoreLastRevision();
+        } catch (CannotRestoreSiddhiAppStateException e) {
+            log.error(e.getMessage(), e);
+        }
+        for (int i = 400; i < values.length; i++) {
+            inputHandler.send(new Object[]{values[i]});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(2, count);
+    }
 }
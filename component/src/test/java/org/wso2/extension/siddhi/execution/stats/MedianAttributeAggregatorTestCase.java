@@ -23,10 +23,25 @@ import io.siddhi.core.event.Event;
 import io.siddhi.core.exception.SiddhiAppCreationException;
 import io.siddhi.core.stream.input.InputHandler;
 import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
+import io.siddhi.core.util.statistics.metrics.Level;
+import io.siddhi.query.api.definition.Attribute;
 import org.apache.log4j.Logger;
 import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Test cases for the median extension.
  */
@@ -557,5 +572,698 @@ public class MedianAttributeAggregatorTestCase {
                 "select stats:median(tt) as tt insert into filteredOutputStream";
         siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
     }
-}
 
+    @Test
+    public void test11() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Large Sliding Length Window With Duplicates TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt int); " +
+                "define stream outputStream (tt double);";
+
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(1000) " +
+                "select stats:median(tt) as tt insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+
+        Random random = new Random(7);
+        int[] values = new int[5000];
+        List<Double> expected = new ArrayList<>();
+        List<Integer> window = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(100);
+            if (window.size() == 1000) {
+                window.remove(0);
+            }
+            window.add(values[i]);
+            List<Integer> sorted = new ArrayList<>(window);
+            Collections.sort(sorted);
+            int mid = sorted.size() / 2;
+            expected.add(sorted.size() % 2 == 0 ? (sorted.get(mid) + sorted.get(mid - 1)) / 2.0 : sorted.get(mid));
+        }
+
+        List<Object> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData(0));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int value : values) {
+            inputHandler.send(new Object[]{value});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void test12() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Group By Sliding Length Window TestCase");
+        count = 0;
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (key string, tt int); " +
+                "define stream outputStream (key string, tt double);";
+
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(4) " +
+                "select key, stats:median(tt) as tt group by key insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    count++;
+                    switch (count) {
+                        case 1:
+                            AssertJUnit.assertEquals(1.0, ev.getData(1));
+                            break;
+                        case 2:
+                            AssertJUnit.assertEquals(100.0, ev.getData(1));
+                            break;
+                        case 3:
+                            AssertJUnit.assertEquals(2.0, ev.getData(1));
+                            break;
+                        case 4:
+                            AssertJUnit.assertEquals(150.0, ev.getData(1));
+                            break;
+                        case 5:
+                            AssertJUnit.assertEquals(4.0, ev.getData(1));
+                            break;
+                        case 6:
+                            AssertJUnit.assertEquals(250.0, ev.getData(1));
+                            break;
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{"a", 1});
+        inputHandler.send(new Object[]{"b", 100});
+        inputHandler.send(new Object[]{"a", 3});
+        inputHandler.send(new Object[]{"b", 200});
+        inputHandler.send(new Object[]{"a", 5});
+        inputHandler.send(new Object[]{"b", 300});
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(6, count);
+    }
+
+    @Test
+    public void test13() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Out Of Arrival Order Expiry TestCase");
+        count = 0;
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt int); " +
+                "define stream outputStream (tt double);";
+
+        String query = "@info(name = 'query1') " + "from inputStream#window.sort(4, tt, 'asc') " +
+                "select stats:median(tt) as tt insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+
+        double[] expected = {2.0, 5.5, 2.0, 4.5, 2.0, 2.0, 2.0};
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    AssertJUnit.assertEquals(expected[count++], ev.getData(0));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{2});
+        inputHandler.send(new Object[]{9});
+        inputHandler.send(new Object[]{2});
+        inputHandler.send(new Object[]{7});
+        // The sort window expires the largest values, 9 and 7, rather than the oldest ones.
+        inputHandler.send(new Object[]{2});
+        inputHandler.send(new Object[]{1});
+        inputHandler.send(new Object[]{3});
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(7, count);
+    }
+
+    @Test
+    public void test14() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Large Length Batch Window TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double); " +
+                "define stream outputStream (tt double);";
+
+        String query = "@info(name = 'query1') " + "from inputStream#window.lengthBatch(1000) " +
+                "select stats:median(tt) as tt insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+
+        Random random = new Random(13);
+        double[] values = new double[5000];
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1000) / 10.0;
+        }
+        for (int from = 0; from < values.length; from += 1000) {
+            double[] batch = Arrays.copyOfRange(values, from, from + 1000);
+            Arrays.sort(batch);
+            expected.add((batch[499] + batch[500]) / 2.0);
+        }
+
+        List<Object> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData(0));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (double value : values) {
+            inputHandler.send(new Object[]{value});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void test15() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Relative Error Sliding Length Window TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt int); " +
+                "define stream outputStream (tt double);";
+
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(500) " +
+                "select stats:median(tt, 0.01) as tt insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+
+        Random random = new Random(17);
+        int[] values = new int[3000];
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1 + random.nextInt(10000);
+            int[] window = Arrays.copyOfRange(values, Math.max(0, i - 499), i + 1);
+            Arrays.sort(window);
+            int midPoint = window.length / 2;
+            expected.add(window.length % 2 == 0 ? (window[midPoint - 1] + window[midPoint]) / 2.0 :
+                    window[midPoint]);
+        }
+
+        List<Object> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData(0));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int value : values) {
+            inputHandler.send(new Object[]{value});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            AssertJUnit.assertEquals(expected.get(i), (Double) actual.get(i), expected.get(i) * 0.01);
+        }
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void test16() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Relative Error Out Of Range TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double); " +
+                "define stream outputStream (tt double);";
+
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:median(tt, 1.0) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test
+    public void test17() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Few Distinct Values Turning Into Many TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt long); " +
+                "define stream outputStream (tt double);";
+
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(300) " +
+                "select stats:median(tt) as tt insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+
+        // Status codes first, which are only counted, then values too diverse to be counted.
+        Random random = new Random(19);
+        long[] statusCodes = {200L, 201L, 204L, 301L, 304L, 400L, 404L, 500L, 503L};
+        long[] values = new long[2000];
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i < 1000 ? statusCodes[random.nextInt(statusCodes.length)] : random.nextInt(100000);
+            long[] window = Arrays.copyOfRange(values, Math.max(0, i - 299), i + 1);
+            Arrays.sort(window);
+            int midPoint = window.length / 2;
+            expected.add(window.length % 2 == 0 ? (window[midPoint - 1] + window[midPoint]) / 2.0 :
+                    window[midPoint]);
+        }
+
+        List<Object> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData(0));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (long value : values) {
+            inputHandler.send(new Object[]{value});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void test18() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Off Heap Storage Grouped Sliding Length Window TestCase");
+        Map<String, String> masterConfigs = new HashMap<>();
+        masterConfigs.put("stats.median.storage", "offHeap");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(masterConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (key string, tt double); " +
+                "define stream outputStream (tt double);";
+
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(2000) " +
+                "select key, stats:median(tt) as tt group by key insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+
+        // Group 'a' is emptied, handing back its off-heap memory, and then comes back alongside 'b'.
+        Random random = new Random(23);
+        String[] keys = new String[6000];
+        double[] values = new double[keys.length];
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i < 2000 ? "a" : i < 4000 || i % 2 == 0 ? "b" : "a";
+            values[i] = random.nextGaussian() * 1000;
+            List<Double> group = new ArrayList<>();
+            for (int j = Math.max(0, i - 1999); j <= i; j++) {
+                if (keys[j].equals(keys[i])) {
+                    group.add(values[j]);
+                }
+            }
+            Collections.sort(group);
+            int midPoint = group.size() / 2;
+            expected.add(group.size() % 2 == 0 ? (group.get(midPoint - 1) + group.get(midPoint)) / 2.0 :
+                    group.get(midPoint));
+        }
+
+        List<Object> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int i = 0; i < keys.length; i++) {
+            inputHandler.send(new Object[]{keys[i], values[i]});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void test19() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Asynchronous Stream With Several Workers TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "@async(buffer.size='256', workers='4', batch.size.max='16') " +
+                "define stream inputStream (tt long);";
+        String query = "@info(name = 'query1') from inputStream " +
+                "select stats:median(tt) as tt, count() as n, min(tt) as minimum, max(tt) as maximum " +
+                "insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        // The values 1 to 20001 are sent in a random order from several threads, so which values each median
+        // is taken over depends on the order the workers apply them in, and the medians may be output in
+        // another order still. Each output is hence only checked against the number, the minimum and the
+        // maximum of the values it was taken over, which are updated along with it.
+        List<Long> values = new ArrayList<>();
+        for (long value = 1; value <= 20001; value++) {
+            values.add(value);
+        }
+        Collections.shuffle(values, new Random(29));
+
+        AtomicInteger eventCount = new AtomicInteger(0);
+        List<Object[]> actual = Collections.synchronizedList(new ArrayList<>());
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData());
+                    eventCount.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        Thread[] senders = new Thread[4];
+        for (int i = 0; i < senders.length; i++) {
+            List<Long> share = values.subList(i * values.size() / senders.length,
+                    (i + 1) * values.size() / senders.length);
+            senders[i] = new Thread(() -> {
+                try {
+                    for (Long value : share) {
+                        inputHandler.send(new Object[]{value});
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            senders[i].start();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        SiddhiTestHelper.waitForEvents(100, values.size(), eventCount, 10000);
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(values.size(), actual.size());
+        List<Object[]> outputs = new ArrayList<>(actual);
+        outputs.sort(Comparator.comparingLong(data -> (Long) data[1]));
+        long total = values.size();
+        for (int i = 0; i < outputs.size(); i++) {
+            Object[] data = outputs.get(i);
+            double median = (Double) data[0];
+            long n = (Long) data[1];
+            // Every value is applied exactly once, so the medians are taken over 1 to 20001 values.
+            AssertJUnit.assertEquals(i + 1, n);
+            AssertJUnit.assertTrue(median >= (Long) data[2] && median <= (Long) data[3]);
+            // The median of n distinct values from 1 to 20001 has (n - 1) / 2 of them on each side.
+            AssertJUnit.assertTrue(median >= (n + 1) / 2.0 && median <= total - (n - 1) / 2.0);
+            AssertJUnit.assertEquals(0.0, median * 2 % 1);
+        }
+        AssertJUnit.assertEquals(10001.0, outputs.get(outputs.size() - 1)[0]);
+    }
+
+    @Test
+    public void test20() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Statistics Enabled TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "@app:statistics(reporter = 'console', interval = '1') " +
+                "define stream inputStream (key string, tt int);";
+        String query = "@info(name = 'query1') from inputStream#window.length(3) " +
+                "select key, stats:median(tt) as tt group by key insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.setStatisticsLevel(Level.DETAIL);
+
+        List<Object> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{"a", 1});
+        inputHandler.send(new Object[]{"b", 10});
+        inputHandler.send(new Object[]{"a", 3});
+        inputHandler.send(new Object[]{"a", 8});
+        inputHandler.send(new Object[]{"b", 20});
+        Thread.sleep(1500);
+        siddhiAppRuntime.setStatisticsLevel(Level.OFF);
+        inputHandler.send(new Object[]{"b", 30});
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(Arrays.asList(1.0, 10.0, 2.0, 5.5, 20.0, 25.0), actual);
+    }
+
+    @Test
+    public void test21() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Memory Budget Grouped Sliding Length Window TestCase");
+        Map<String, String> masterConfigs = new HashMap<>();
+        masterConfigs.put("stats.median.memoryBudget", "32k");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(masterConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (key string, tt double);";
+        String query = "@info(name = 'query1') from inputStream#window.length(3000) " +
+                "select key, stats:median(tt) as tt group by key insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        // The window of 3000 values soon takes the query past its budget, and group 'a' spills to a file
+        // until it is emptied, after which it comes back alongside 'b'.
+        Random random = new Random(31);
+        String[] keys = new String[9000];
+        double[] values = new double[keys.length];
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i < 3000 ? "a" : i < 6000 || i % 2 == 0 ? "b" : "a";
+            values[i] = random.nextGaussian() * 1000;
+            List<Double> group = new ArrayList<>();
+            for (int j = Math.max(0, i - 2999); j <= i; j++) {
+                if (keys[j].equals(keys[i])) {
+                    group.add(values[j]);
+                }
+            }
+            Collections.sort(group);
+            int midPoint = group.size() / 2;
+            expected.add(group.size() % 2 == 0 ? (group.get(midPoint - 1) + group.get(midPoint)) / 2.0 :
+                    group.get(midPoint));
+        }
+
+        List<Object> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int i = 0; i < keys.length; i++) {
+            inputHandler.send(new Object[]{keys[i], values[i]});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(expected, actual);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void test22() {
+        log.info("MedianAggregatorTestCase Invalid Memory Budget TestCase");
+        Map<String, String> masterConfigs = new HashMap<>();
+        masterConfigs.put("stats.median.memoryBudget", "lots");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(masterConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (tt double);";
+        String query = "@info(name = 'query1') from inputStream#window.length(5) " +
+                "select stats:median(tt) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test
+    public void test23() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Short Lived Groups Sliding Length Window TestCase");
+        Map<String, String> masterConfigs = new HashMap<>();
+        masterConfigs.put("stats.median.statePoolSize", "4");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(masterConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (session string, tt int);";
+        String query = "@info(name = 'query1') from inputStream#window.length(50) " +
+                "select session, stats:median(tt) as tt group by session insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        // Sessions overlap and end at random, and are emptied as their events leave the window, so the
+        // stores of ended sessions are handed on to new ones.
+        Random random = new Random(47);
+        String[] sessions = new String[5000];
+        int[] values = new int[sessions.length];
+        List<Double> expected = new ArrayList<>();
+        int session = 0;
+        for (int i = 0; i < sessions.length; i++) {
+            if (random.nextInt(20) == 0) {
+                session++;
+            }
+            sessions[i] = "s" + (session + random.nextInt(2));
+            values[i] = random.nextInt(i % 3 == 0 ? 10 : 100000);
+            List<Integer> group = new ArrayList<>();
+            for (int j = Math.max(0, i - 49); j <= i; j++) {
+                if (sessions[j].equals(sessions[i])) {
+                    group.add(values[j]);
+                }
+            }
+            Collections.sort(group);
+            int midPoint = group.size() / 2;
+            expected.add(group.size() % 2 == 0 ? (group.get(midPoint - 1) + group.get(midPoint)) / 2.0 :
+                    (double) group.get(midPoint));
+        }
+
+        List<Object> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int i = 0; i < sessions.length; i++) {
+            inputHandler.send(new Object[]{sessions[i], values[i]});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void test24() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Null Values Sliding Length Window TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double);";
+        String query = "@info(name = 'query1') from inputStream#window.length(3) " +
+                "select stats:median(tt) as tt, stats:median(tt, 0.01) as approximateTt " +
+                "insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Object> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add(ev.getData(0));
+                    AssertJUnit.assertEquals((Double) ev.getData(0), (Double) ev.getData(1), 0.01 * 4.0);
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{2.0});
+        inputHandler.send(new Object[]{null});
+        inputHandler.send(new Object[]{4.0});
+        inputHandler.send(new Object[]{null});
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(Arrays.asList(2.0, 2.0, 3.0, 4.0), actual);
+    }
+
+    @Test
+    public void test25() throws InterruptedException {
+        log.info("MedianAggregatorTestCase Infinite Values Relative Error TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double);";
+        String query = "@info(name = 'query1') from inputStream#window.length(5) " +
+                "select stats:median(tt, 0.01) as tt insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Double> actual = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    actual.add((Double) ev.getData(0));
+                }
+            }
+        });
+
+        // An infinite value must not widen the buckets of the finite ones past the relative error.
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (double value : new double[]{10, 20, Double.POSITIVE_INFINITY, 30, 40, 50, Double.NEGATIVE_INFINITY}) {
+            inputHandler.send(new Object[]{value});
+        }
+        siddhiAppRuntime.shutdown();
+
+        double[] expected = {10, 15, 20, 25, 30, 40, 40};
+        AssertJUnit.assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            AssertJUnit.assertEquals(expected[i], actual.get(i), expected[i] * 0.01);
+        }
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void test26() {
+        log.info("MedianAggregatorTestCase Relative Error Below Minimum TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double);";
+        String query = "@info(name = 'query1') from inputStream#window.length(5) " +
+                "select stats:median(tt, 0.000001) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test
+    public void test27() {
+        log.info("MedianAggregatorTestCase Spilled Store Drained TestCase");
+        MemoryBudget budget = new MemoryBudget(32 * 1024, new File(System.getProperty("java.io.tmpdir")));
+        OrderStatisticStore store = OrderStatisticStore.supplierOf(Attribute.Type.DOUBLE).get();
+        store.setMemoryBudget(budget);
+
+        // The values of a window that is not grouped are spilled, and its state is never destroyed, so the
+        // file and the budget have to be given up as soon as the window is drained.
+        for (int i = 0; i < 5000; i++) {
+            store.add((double) i);
+        }
+        OrderStatisticTree spilled = store.tree;
+        AssertJUnit.assertTrue(spilled instanceof OrderStatisticTree.Mapped);
+        AssertJUnit.assertTrue(spilled.estimatedBytes() > 0);
+        for (int i = 0; i < 5000; i++) {
+            AssertJUnit.assertTrue(store.remove((double) i));
+            AssertJUnit.assertEquals(i < 4999 ? 2500.0 + i / 2.0 : 0.0, store.median());
+        }
+        AssertJUnit.assertFalse(store.tree instanceof OrderStatisticTree.Mapped);
+        AssertJUnit.assertEquals(0, spilled.estimatedBytes());
+        AssertJUnit.assertEquals(0, budget.getUsed());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test cases for the median extension of incremental aggregations.
+ */
+public class MedianIncrementalAggregationTestCase {
+
+    private static final Logger log = Logger.getLogger(MedianIncrementalAggregationTestCase.class);
+
+    @Test
+    public void testMedianIncrementalAggregation1() throws InterruptedException {
+        log.info("MedianIncrementalAggregationTestCase Seconds Rolled Up To Minutes TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream stockStream (symbol string, price double, timestamp long); ";
+        String aggregation = "define aggregation stockAggregation " +
+                "from stockStream " +
+                "select symbol, stats:median(price) as medianPrice " +
+                "group by symbol " +
+                "aggregate by timestamp every sec...min ;";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + aggregation);
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("stockStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[]{"WSO2", 10.0, 1496289950000L});
+        inputHandler.send(new Object[]{"WSO2", 30.0, 1496289950000L});
+        inputHandler.send(new Object[]{"WSO2", 20.0, 1496289950000L});
+        inputHandler.send(new Object[]{"WSO2", 50.0, 1496289951000L});
+        inputHandler.send(new Object[]{"WSO2", 40.0, 1496289951000L});
+        inputHandler.send(new Object[]{"IBM", 7.0, 1496289951000L});
+        Thread.sleep(100);
+
+        Event[] seconds = siddhiAppRuntime.query("from stockAggregation within 1496200000000L, 1596434876000L " +
+                "per \"seconds\" select AGG_TIMESTAMP, symbol, medianPrice " +
+                "order by AGG_TIMESTAMP, symbol");
+        AssertJUnit.assertNotNull(seconds);
+        AssertJUnit.assertEquals(3, seconds.length);
+        AssertJUnit.assertEquals(20.0, seconds[0].getData(2));
+        AssertJUnit.assertEquals("IBM", seconds[1].getData(1));
+        AssertJUnit.assertEquals(7.0, seconds[1].getData(2));
+        AssertJUnit.assertEquals(45.0, seconds[2].getData(2));
+
+        Event[] minutes = siddhiAppRuntime.query("from stockAggregation within 1496200000000L, 1596434876000L " +
+                "per \"minutes\" select symbol, medianPrice order by symbol");
+        AssertJUnit.assertNotNull(minutes);
+        AssertJUnit.assertEquals(2, minutes.length);
+        AssertJUnit.assertEquals("IBM", minutes[0].getData(0));
+        AssertJUnit.assertEquals(7.0, minutes[0].getData(1));
+        AssertJUnit.assertEquals("WSO2", minutes[1].getData(0));
+        AssertJUnit.assertEquals(30.0, minutes[1].getData(1));
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testMedianIncrementalAggregation2() throws InterruptedException {
+        log.info("MedianIncrementalAggregationTestCase Merged Digests Left Unchanged TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (price double); ";
+        String query = "@info(name = 'query1') from inputStream " +
+                "select stats:mergeDigest(stats:createDigest(price)) as digest insert into outputStream;";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<TDigest> digests = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    digests.add((TDigest) event.getData(0));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (int i = 1; i <= 100; i++) {
+            inputHandler.send(new Object[]{(double) i});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(100, digests.size());
+        // Each digest still summarises the values up to its own event, however many events followed.
+        for (int i = 0; i < digests.size(); i++) {
+            AssertJUnit.assertEquals(i + 1, digests.get(i).size());
+            AssertJUnit.assertEquals((double) i + 1, digests.get(i).quantile(1), 0);
+        }
+    }
+
+    @Test(expectedExceptions = SiddhiAppRuntimeException.class)
+    public void testMedianIncrementalAggregation3() {
+        log.info("MedianIncrementalAggregationTestCase Null Digest Percentile TestCase");
+        TDigest digest = new TDigest(CreateDigestFunctionExecutor.DEFAULT_COMPRESSION);
+        digest.add(1.0);
+        new DigestPercentileFunctionExecutor().execute(new Object[]{digest, null}, null);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test cases for the percentile extension.
+ */
+public class PercentileAttributeAggregatorTestCase {
+
+    private static final Logger log = Logger.getLogger(PercentileAttributeAggregatorTestCase.class);
+
+    private static String percentileQuery(String streamDefinition, String selection) {
+        return streamDefinition + "@info(name = 'query1') " + "from inputStream#window.length(4) " +
+                "select " + selection + " as tt insert into filteredOutputStream";
+    }
+
+    @Test
+    public void testPercentile1() throws InterruptedException {
+        log.info("PercentileTestCase Int Linear Interpolation TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                percentileQuery("define stream inputStream (tt int); ", "stats:percentile(tt, 90)"),
+                new Object[]{1}, new Object[]{2}, new Object[]{3}, new Object[]{4}, new Object[]{8});
+
+        double[] expected = {1.0, 1.9, 2.8, 3.7, 6.8};
+        AssertJUnit.assertEquals(expected.length, results.size());
+        for (int i = 0; i < expected.length; i++) {
+            AssertJUnit.assertEquals(expected[i], (Double) results.get(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void testPercentile2() throws InterruptedException {
+        log.info("PercentileTestCase Long Nearest Rank TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                percentileQuery("define stream inputStream (tt long); ", "stats:percentile(tt, 90, 'nearest')"),
+                new Object[]{1L}, new Object[]{2L}, new Object[]{3L}, new Object[]{4L}, new Object[]{8L});
+
+        AssertJUnit.assertEquals(Arrays.asList(1.0, 2.0, 3.0, 4.0, 8.0), results);
+    }
+
+    @Test
+    public void testPercentile3() throws InterruptedException {
+        log.info("PercentileTestCase Fiftieth Percentile Equals Median TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                percentileQuery("define stream inputStream (tt double); ", "stats:percentile(tt, 50)"),
+                new Object[]{5.0}, new Object[]{-1.5}, new Object[]{3.0}, new Object[]{10.0}, new Object[]{0.5});
+
+        AssertJUnit.assertEquals(Arrays.asList(5.0, 1.75, 3.0, 4.0, 1.75), results);
+    }
+
+    @Test
+    public void testPercentile4() throws InterruptedException {
+        log.info("PercentileTestCase Float Extreme Percentiles TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                percentileQuery("define stream inputStream (tt float); ", "stats:percentile(tt, 0, 'nearest')"),
+                new Object[]{2.5f}, new Object[]{1.5f}, new Object[]{4.0f});
+
+        AssertJUnit.assertEquals(Arrays.asList(2.5, 1.5, 1.5), results);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testPercentile5() {
+        log.info("PercentileTestCase Percentile Out Of Range TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:percentile(tt, 101) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testPercentile6() {
+        log.info("PercentileTestCase Unknown Interpolation TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:percentile(tt, 90, 'cubic') as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test
+    public void testPercentile7() throws InterruptedException {
+        log.info("PercentileTestCase Null Values TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                percentileQuery("define stream inputStream (tt int); ", "stats:percentile(tt, 50)"),
+                new Object[]{1}, new Object[]{null}, new Object[]{3}, new Object[]{null}, new Object[]{5});
+
+        AssertJUnit.assertEquals(Arrays.asList(1.0, 1.0, 2.0, 2.0, 4.0), results);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test cases for the percentiles extension.
+ */
+public class PercentilesAttributeAggregatorTestCase {
+
+    private static final Logger log = Logger.getLogger(PercentilesAttributeAggregatorTestCase.class);
+
+    private static String percentileQuery(String streamDefinition, String selection) {
+        return streamDefinition + "@info(name = 'query1') " + "from inputStream#window.length(3) " +
+                "select " + selection + " as tt insert into filteredOutputStream";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> runPercentilesQuery(String streamDefinition, String selection,
+                                                                 Object[]... events) throws InterruptedException {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Object value : QueryTestHelper.runQueryForValues(percentileQuery(streamDefinition, selection),
+                events)) {
+            results.add((Map<String, Object>) value);
+        }
+        return results;
+    }
+
+    @Test
+    public void testPercentiles1() throws InterruptedException {
+        log.info("PercentilesTestCase Int Linear Interpolation TestCase");
+        List<Map<String, Object>> results = runPercentilesQuery("define stream inputStream (tt int); ",
+                "stats:percentiles(tt, 50, 90)",
+                new Object[]{1}, new Object[]{2}, new Object[]{3}, new Object[]{10});
+
+        double[][] expected = {{1.0, 1.0}, {1.5, 1.9}, {2.0, 2.8}, {3.0, 8.6}};
+        AssertJUnit.assertEquals(expected.length, results.size());
+        for (int i = 0; i < expected.length; i++) {
+            AssertJUnit.assertEquals(Arrays.asList("p50", "p90"), new ArrayList<>(results.get(i).keySet()));
+            AssertJUnit.assertEquals(expected[i][0], (Double) results.get(i).get("p50"), 1e-9);
+            AssertJUnit.assertEquals(expected[i][1], (Double) results.get(i).get("p90"), 1e-9);
+        }
+    }
+
+    @Test
+    public void testPercentiles2() throws InterruptedException {
+        log.info("PercentilesTestCase Double Nearest Rank TestCase");
+        List<Map<String, Object>> results = runPercentilesQuery("define stream inputStream (tt double); ",
+                "stats:percentiles(tt, 99.9, 0, 'nearest')",
+                new Object[]{4.0}, new Object[]{1.0}, new Object[]{2.5}, new Object[]{0.5});
+
+        AssertJUnit.assertEquals(4, results.size());
+        AssertJUnit.assertEquals(Arrays.asList("p99.9", "p0"), new ArrayList<>(results.get(0).keySet()));
+        double[][] expected = {{4.0, 4.0}, {4.0, 1.0}, {4.0, 1.0}, {2.5, 0.5}};
+        for (int i = 0; i < expected.length; i++) {
+            AssertJUnit.assertEquals(expected[i][0], results.get(i).get("p99.9"));
+            AssertJUnit.assertEquals(expected[i][1], results.get(i).get("p0"));
+        }
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testPercentiles3() {
+        log.info("PercentilesTestCase Non Constant Percentile TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double, p double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:percentiles(tt, 50, p) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testPercentiles4() {
+        log.info("PercentilesTestCase Unknown Interpolation TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:percentiles(tt, 50, 90, 'spline') as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testPercentiles5() {
+        log.info("PercentilesTestCase Duplicate Percentile TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:percentiles(tt, 50, 90, 50.0) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+}
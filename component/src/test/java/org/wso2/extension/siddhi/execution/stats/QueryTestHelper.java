@@ -0,0 +1,71 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the Siddhi app of a test case over its events, sent to 'inputStream', and collects the events the
+ * app outputs to 'filteredOutputStream'.
+ */
+final class QueryTestHelper {
+
+    private QueryTestHelper() {
+    }
+
+    /**
+     * @return the data of each output event, in the order they were output
+     */
+    static List<Object[]> runQuery(String siddhiApp, Object[]... events) throws InterruptedException {
+        SiddhiManager siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        List<Object[]> results = new ArrayList<>();
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event ev : events) {
+                    results.add(ev.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (Object[] event : events) {
+            inputHandler.send(event);
+        }
+        siddhiAppRuntime.shutdown();
+        return results;
+    }
+
+    /**
+     * @return the first attribute of each output event, in the order they were output
+     */
+    static List<Object> runQueryForValues(String siddhiApp, Object[]... events) throws InterruptedException {
+        List<Object> values = new ArrayList<>();
+        for (Object[] data : runQuery(siddhiApp, events)) {
+            values.add(data[0]);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the stddev extension.
+ */
+public class StandardDeviationAttributeAggregatorTestCase {
+
+    private static final Logger log = Logger.getLogger(StandardDeviationAttributeAggregatorTestCase.class);
+    private double lastValue;
+
+    @Test
+    public void testStandardDeviation1() throws InterruptedException {
+        log.info("StandardDeviationTestCase Float Length Batch Window TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tt float); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.lengthBatch(8) " +
+                "select stats:stddev(tt) as tt insert into filteredOutputStream";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.
+                createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("filteredOutputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                lastValue = (Double) events[events.length - 1].getData(0);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+        for (float value : new float[]{2f, 4f, 4f, 4f, 5f, 5f, 7f, 9f}) {
+            inputHandler.send(new Object[]{value});
+        }
+        siddhiAppRuntime.shutdown();
+
+        AssertJUnit.assertEquals(2.0, lastValue, 1e-9);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test cases for the summary extension.
+ */
+public class SummaryAttributeAggregatorTestCase {
+
+    private static final Logger log = Logger.getLogger(SummaryAttributeAggregatorTestCase.class);
+
+    @Test
+    public void testSummary1() throws InterruptedException {
+        log.info("SummaryTestCase Int Sliding Length Window TestCase");
+        String inStreamDefinition = "define stream inputStream (tt int); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(3) " +
+                "select stats:summary(tt) as summary insert into filteredOutputStream";
+        List<Object[]> results = QueryTestHelper.runQuery(inStreamDefinition + query,
+                new Object[]{1}, new Object[]{5}, new Object[]{3}, new Object[]{10});
+
+        AssertJUnit.assertEquals(4, results.size());
+        Map<?, ?> first = (Map<?, ?>) results.get(0)[0];
+        AssertJUnit.assertEquals(1L, first.get("count"));
+        AssertJUnit.assertEquals(1.0, first.get("min"));
+        AssertJUnit.assertEquals(1.0, first.get("max"));
+        AssertJUnit.assertEquals(1.0, first.get("median"));
+        AssertJUnit.assertEquals(0.0, first.get("stddev"));
+
+        Map<?, ?> last = (Map<?, ?>) results.get(3)[0];
+        AssertJUnit.assertEquals(3L, last.get("count"));
+        AssertJUnit.assertEquals(3.0, last.get("min"));
+        AssertJUnit.assertEquals(10.0, last.get("max"));
+        AssertJUnit.assertEquals(6.0, (Double) last.get("mean"), 1e-9);
+        AssertJUnit.assertEquals(Math.sqrt(26.0 / 3), (Double) last.get("stddev"), 1e-9);
+        AssertJUnit.assertEquals(5.0, last.get("median"));
+    }
+
+    @Test
+    public void testSummary2() throws InterruptedException {
+        log.info("SummaryTestCase Summary Value Function TestCase");
+        String inStreamDefinition = "define stream inputStream (tt double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(4) " +
+                "select stats:summary(tt) as summary insert into summaryStream; " +
+                "@info(name = 'query2') from summaryStream " +
+                "select stats:summaryValue(summary, 'median') as median, " +
+                "stats:summaryValue(summary, 'max') as max, stats:summaryValue(summary, 'count') as count " +
+                "insert into filteredOutputStream";
+        List<Object[]> results = QueryTestHelper.runQuery(inStreamDefinition + query,
+                new Object[]{4.0}, new Object[]{2.0}, new Object[]{8.0});
+
+        AssertJUnit.assertEquals(3, results.size());
+        AssertJUnit.assertEquals(3.0, results.get(1)[0]);
+        AssertJUnit.assertEquals(4.0, results.get(2)[0]);
+        AssertJUnit.assertEquals(8.0, results.get(2)[1]);
+        AssertJUnit.assertEquals(3.0, results.get(2)[2]);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testSummary3() {
+        log.info("SummaryTestCase Unknown Statistic TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream summaryStream (summary object); ";
+        String query = "@info(name = 'query1') from summaryStream " +
+                "select stats:summaryValue(summary, 'mode') as mode insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Test cases for the variance extension.
+ */
+public class VarianceAttributeAggregatorTestCase {
+
+    private static final Logger log = Logger.getLogger(VarianceAttributeAggregatorTestCase.class);
+
+    private static String varianceQuery(String type, int windowLength) {
+        return "define stream inputStream (tt " + type + "); " +
+                "@info(name = 'query1') " + "from inputStream#window.length(" + windowLength + ") " +
+                "select stats:variance(tt) as tt insert into filteredOutputStream";
+    }
+
+    @Test
+    public void testVariance1() throws InterruptedException {
+        log.info("VarianceTestCase Double Sliding Length Window TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(varianceQuery("double", 3),
+                new Object[]{1.0}, new Object[]{2.0}, new Object[]{3.0}, new Object[]{4.0}, new Object[]{10.0});
+
+        double[] expected = {0.0, 0.25, 2.0 / 3, 2.0 / 3, 86.0 / 9};
+        AssertJUnit.assertEquals(expected.length, results.size());
+        for (int i = 0; i < expected.length; i++) {
+            AssertJUnit.assertEquals(expected[i], (Double) results.get(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void testVariance2() throws InterruptedException {
+        log.info("VarianceTestCase Large Offset Long Running Window TestCase");
+        Object[][] events = new Object[100000][];
+        for (int i = 0; i < events.length; i++) {
+            // Values alternate between 1e9 and 1e9 + 1, whose variance is 0.25 in any even sized window.
+            events[i] = new Object[]{1e9 + (i % 2)};
+        }
+        List<Object> results = QueryTestHelper.runQueryForValues(varianceQuery("double", 100), events);
+
+        AssertJUnit.assertEquals(0.25, (Double) results.get(results.size() - 1), 1e-9);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testVariance3() throws InterruptedException {
+        log.info("VarianceTestCase Unsupported Type TestCase");
+        QueryTestHelper.runQuery(varianceQuery("string", 3));
+    }
+
+    @Test
+    public void testVariance4() throws InterruptedException {
+        log.info("VarianceTestCase Drifting Sliding Length Window TestCase");
+        double[] values = new double[20000];
+        Object[][] events = new Object[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            // Values drift far from the first one, while those of each window stay close to each other.
+            values[i] = 1e12 + i * 1000.0 + (i % 7);
+            events[i] = new Object[]{values[i]};
+        }
+        List<Object> results = QueryTestHelper.runQueryForValues(varianceQuery("double", 5), events);
+
+        AssertJUnit.assertEquals(values.length, results.size());
+        for (int i = 1; i < values.length; i++) {
+            int from = Math.max(0, i - 4);
+            double mean = 0;
+            for (int j = from; j <= i; j++) {
+                mean += values[j] - values[from];
+            }
+            mean /= i - from + 1;
+            double variance = 0;
+            for (int j = from; j <= i; j++) {
+                variance += (values[j] - values[from] - mean) * (values[j] - values[from] - mean);
+            }
+            variance /= i - from + 1;
+            AssertJUnit.assertEquals(variance, (Double) results.get(i), variance * 1e-10);
+        }
+    }
+}
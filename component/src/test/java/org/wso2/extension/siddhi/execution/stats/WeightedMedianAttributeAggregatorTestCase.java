@@ -0,0 +1,152 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test cases for the weighted median extension.
+ */
+public class WeightedMedianAttributeAggregatorTestCase {
+
+    private static final Logger log = Logger.getLogger(WeightedMedianAttributeAggregatorTestCase.class);
+
+    private static String weightedMedianQuery(String streamDefinition, String window) {
+        return streamDefinition + "@info(name = 'query1') " + "from inputStream#window." + window + " " +
+                "select stats:weightedMedian(price, volume) as tt insert into filteredOutputStream";
+    }
+
+    private static List<Object> slidingMedians(Object[][] events, int length) {
+        List<Object> medians = new ArrayList<>();
+        for (int i = 0; i < events.length; i++) {
+            int from = Math.max(0, i - length + 1);
+            int[] window = new int[i - from + 1];
+            for (int j = from; j <= i; j++) {
+                window[j - from] = (Integer) events[j][0];
+            }
+            Arrays.sort(window);
+            int midPoint = window.length / 2;
+            medians.add(window.length % 2 == 0 ? (window[midPoint - 1] + window[midPoint]) / 2.0 :
+                    (double) window[midPoint]);
+        }
+        return medians;
+    }
+
+    @Test
+    public void testWeightedMedian1() throws InterruptedException {
+        log.info("WeightedMedianTestCase Double Sliding Length Window TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                weightedMedianQuery("define stream inputStream (price double, volume long); ", "length(3)"),
+                new Object[]{10.0, 100L}, new Object[]{12.0, 300L}, new Object[]{11.0, 100L},
+                new Object[]{9.0, 500L}, new Object[]{13.0, 100L});
+
+        // 12 outweighs the other values as soon as it arrives, and 9 once it does.
+        AssertJUnit.assertEquals(Arrays.asList(10.0, 12.0, 12.0, 9.0, 9.0), results);
+    }
+
+    @Test
+    public void testWeightedMedian2() throws InterruptedException {
+        log.info("WeightedMedianTestCase Even Split TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                weightedMedianQuery("define stream inputStream (price int, volume int); ", "length(4)"),
+                new Object[]{1, 2}, new Object[]{3, 2}, new Object[]{2, 1}, new Object[]{4, 3});
+
+        // 1 weighs exactly half of the first two values, so their median is the mean of 1 and 3.
+        AssertJUnit.assertEquals(Arrays.asList(1.0, 2.0, 2.0, 3.0), results);
+    }
+
+    @Test
+    public void testWeightedMedian3() throws InterruptedException {
+        log.info("WeightedMedianTestCase Ignored Weights TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                weightedMedianQuery("define stream inputStream (price float, volume double); ", "length(2)"),
+                new Object[]{5.0f, 1.0}, new Object[]{1.0f, 0.0}, new Object[]{2.0f, null},
+                new Object[]{3.0f, -4.0}, new Object[]{7.0f, 3.0});
+
+        AssertJUnit.assertEquals(Arrays.asList(5.0, 5.0, 0.0, 0.0, 7.0), results);
+    }
+
+    @Test
+    public void testWeightedMedian4() throws InterruptedException {
+        log.info("WeightedMedianTestCase Equal Weights Sliding Length Window TestCase");
+        Random random = new Random(11);
+        Object[][] events = new Object[2000][];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new Object[]{random.nextInt(1000), 7};
+        }
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                weightedMedianQuery("define stream inputStream (price int, volume int); ", "length(100)"), events);
+
+        AssertJUnit.assertEquals(slidingMedians(events, 100), results);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testWeightedMedian5() {
+        log.info("WeightedMedianTestCase Missing Weight TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (price double); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:weightedMedian(price) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test(expectedExceptions = SiddhiAppCreationException.class)
+    public void testWeightedMedian6() {
+        log.info("WeightedMedianTestCase String Weight TestCase");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (price double, volume string); ";
+        String query = "@info(name = 'query1') " + "from inputStream#window.length(5) " +
+                "select stats:weightedMedian(price, volume) as tt insert into filteredOutputStream";
+        siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+    }
+
+    @Test
+    public void testWeightedMedian7() throws InterruptedException {
+        log.info("WeightedMedianTestCase Equal Fractional Weights Sliding Length Window TestCase");
+        Random random = new Random(13);
+        Object[][] events = new Object[5000][];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new Object[]{random.nextInt(50), 0.1};
+        }
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                weightedMedianQuery("define stream inputStream (price int, volume double); ", "length(100)"), events);
+
+        // Sums of 0.1 are inexact, and would drift as the window slides if subtracted.
+        AssertJUnit.assertEquals(slidingMedians(events, 100), results);
+    }
+
+    @Test
+    public void testWeightedMedian8() throws InterruptedException {
+        log.info("WeightedMedianTestCase Fractional Even Split TestCase");
+        List<Object> results = QueryTestHelper.runQueryForValues(
+                weightedMedianQuery("define stream inputStream (price int, volume double); ", "length(3)"),
+                new Object[]{1, 0.1}, new Object[]{2, 0.2}, new Object[]{3, 0.3}, new Object[]{4, 0.1});
+
+        // 0.1 and 0.2 add up to a little more than 0.3 in binary, yet weigh half the first three values.
+        AssertJUnit.assertEquals(Arrays.asList(1.0, 2.0, 2.5, 3.0), results);
+    }
+}
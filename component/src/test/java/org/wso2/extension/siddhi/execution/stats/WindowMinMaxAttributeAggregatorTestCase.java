@@ -0,0 +1,83 @@
+/*
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.extension.siddhi.execution.stats;
+
+import org.apache.log4j.Logger;
+import org.testng.AssertJUnit;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test cases for the windowMin and windowMax extensions.
+ */
+public class WindowMinMaxAttributeAggregatorTestCase {
+
+    private static final Logger log = Logger.getLogger(WindowMinMaxAttributeAggregatorTestCase.class);
+
+    private static String windowMinMaxQuery(String type, String window) {
+        return "define stream inputStream (tt " + type + "); " +
+                "@info(name = 'query1') " + "from inputStream#window." + window + " " +
+                "select stats:windowMin(tt) as minTt, stats:windowMax(tt) as maxTt " +
+                "insert into filteredOutputStream";
+    }
+
+    @Test
+    public void testWindowMinMax1() throws InterruptedException {
+        log.info("WindowMinMaxTestCase Int Sliding Length Window TestCase");
+        int[] values = {5, 3, 4, 6, 2, 7, 7};
+        Object[][] events = new Object[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            events[i] = new Object[]{values[i]};
+        }
+        List<Object[]> results = QueryTestHelper.runQuery(windowMinMaxQuery("int", "length(3)"), events);
+
+        AssertJUnit.assertEquals(7, results.size());
+        int[][] expected = {{5, 5}, {3, 5}, {3, 5}, {3, 6}, {2, 6}, {2, 7}, {2, 7}};
+        for (int i = 0; i < expected.length; i++) {
+            AssertJUnit.assertEquals(expected[i][0], results.get(i)[0]);
+            AssertJUnit.assertEquals(expected[i][1], results.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void testWindowMinMax2() throws InterruptedException {
+        log.info("WindowMinMaxTestCase Double Large Sliding Length Window TestCase");
+        Random random = new Random(17);
+        List<Double> window = new ArrayList<>();
+        List<Object[]> expected = new ArrayList<>();
+        Object[][] events = new Object[10000][];
+        for (int i = 0; i < events.length; i++) {
+            double value = random.nextGaussian();
+            if (window.size() == 100) {
+                window.remove(0);
+            }
+            window.add(value);
+            expected.add(new Object[]{Collections.min(window), Collections.max(window)});
+            events[i] = new Object[]{value};
+        }
+        List<Object[]> results = QueryTestHelper.runQuery(windowMinMaxQuery("double", "length(100)"), events);
+
+        AssertJUnit.assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++) {
+            AssertJUnit.assertTrue(Arrays.equals(expected.get(i), results.get(i)));
+        }
+    }
+}